@@ -0,0 +1,100 @@
+package com.gh4a.activities;
+
+import com.gh4a.benchmark.BenchmarkRunner;
+import com.gh4a.benchmark.Fixtures;
+
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.io.IOException;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Measures the native work the code viewer does before the WebView can paint the first
+ * lines of a file: generating the document, plus fetching the first block for files that
+ * are streamed in blocks.
+ *
+ * This is not the time to first paint. Parsing, highlighting and layout in the WebView
+ * can't run on the JVM and usually take longer. WebViewerActivity logs the on-device time
+ * from load until the first paint in debug builds ("First paint of ... after ... ms"); only
+ * that log gives real numbers.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class CodeViewerBenchmark {
+    private static final BenchmarkRunner sRunner = new BenchmarkRunner("CodeViewer");
+    private static final String FILE_NAME = "bundle.js";
+
+    private FileViewerActivity mActivity;
+
+    @Before
+    public void setup() {
+        mActivity = Robolectric.buildActivity(FileViewerActivity.class,
+                FileViewerActivity.makeIntent(RuntimeEnvironment.application,
+                        "octo-org", "octo-repo", "master", FILE_NAME)).get();
+    }
+
+    @AfterClass
+    public static void writeResults() throws IOException {
+        sRunner.writeResults();
+    }
+
+    @Test
+    public void firstPaint100Kb() throws Exception {
+        // Below code_viewer_chunked_threshold_kb, so the only path is the unchunked one
+        String data = makeFile(100 * 1024);
+        String html = sRunner.measure("unchunked_100kb", 2, 5, () -> generateHtml(data));
+        assertNull("File was unexpectedly chunked", mActivity.getCodeBlocks());
+        assertTrue("File content is missing", html.length() > data.length());
+    }
+
+    @Test
+    public void firstPaint1Mb() throws Exception {
+        measureChunkedFirstPaint("1mb", 1024 * 1024);
+    }
+
+    @Test
+    public void firstPaint5Mb() throws Exception {
+        measureChunkedFirstPaint("5mb", 5 * 1024 * 1024);
+    }
+
+    private void measureChunkedFirstPaint(String sizeName, int size) throws Exception {
+        String data = makeFile(size);
+
+        // The print theme always takes the unchunked path, which used to be the only one
+        String fullHtml = sRunner.measure("unchunked_" + sizeName, 2, 5,
+                () -> mActivity.generateCodeHtml(data, FILE_NAME, -1, -1,
+                        WebViewerActivity.PRINT_CSS_THEME, false));
+        assertTrue("File content is missing", fullHtml.length() > size);
+
+        String firstBlock = sRunner.measure("first_block_" + sizeName, 2, 5, () -> {
+            generateHtml(data);
+            return mActivity.getCodeBlocks().getBlockHtml(0);
+        });
+        assertNotNull("File was unexpectedly not chunked", mActivity.getCodeBlocks());
+        assertFalse("First block is empty", firstBlock.isEmpty());
+    }
+
+    private String generateHtml(String data) {
+        return mActivity.generateCodeHtml(data, FILE_NAME, -1, -1,
+                WebViewerActivity.LIGHT_CSS_THEME, false);
+    }
+
+    private static String makeFile(int size) throws IOException {
+        String source = Fixtures.read("large_diff.patch");
+        StringBuilder sb = new StringBuilder(size + source.length());
+        while (sb.length() < size) {
+            sb.append(source);
+        }
+        sb.setLength(size);
+        return sb.toString();
+    }
+}
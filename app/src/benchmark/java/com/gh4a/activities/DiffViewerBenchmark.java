@@ -0,0 +1,78 @@
+package com.gh4a.activities;
+
+import android.content.Intent;
+import android.text.TextUtils;
+import android.util.SparseArray;
+
+import com.gh4a.adapter.DiffLineAdapter;
+import com.gh4a.benchmark.BenchmarkRunner;
+import com.gh4a.benchmark.Fixtures;
+import com.gh4a.model.ParsedDiff;
+import com.gh4a.utils.HttpImageGetter;
+import com.gh4a.widget.ReactionBar;
+import com.meisolsson.githubsdk.model.PositionalCommentBase;
+import com.meisolsson.githubsdk.model.ReviewComment;
+
+import org.junit.AfterClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+public class DiffViewerBenchmark {
+    private static final BenchmarkRunner sRunner = new BenchmarkRunner("DiffViewer");
+
+    @AfterClass
+    public static void writeResults() throws IOException {
+        sRunner.writeResults();
+    }
+
+    @Test
+    public void showDiff() throws Exception {
+        String diff = Fixtures.read("large_diff.patch");
+        List<ReviewComment> comments =
+                Fixtures.readList("review_comments.json", ReviewComment.class);
+        String path = comments.get(0).path();
+        Intent intent = PullRequestDiffViewerActivity.makeIntent(RuntimeEnvironment.application,
+                "octo-org", "octo-repo", 42, "6dcb09b5b57875f334f61aebed695e2e4193db5e",
+                path, diff, comments, -1, -1, -1, false, null);
+        // The activity only serves as themed context and adapter callback here
+        DiffViewerActivity<?> activity =
+                Robolectric.buildActivity(PullRequestDiffViewerActivity.class, intent).create().get();
+        DiffLineAdapter adapter = new DiffLineAdapter(activity, new HttpImageGetter(activity),
+                new ReactionBar.ReactionDetailsCache(activity), 12F, activity);
+
+        // Grouped like DiffViewerActivity does when loading the comments
+        SparseArray<List<PositionalCommentBase>> commentsByLine = new SparseArray<>();
+        for (ReviewComment comment : comments) {
+            if (!TextUtils.equals(comment.path(), path)) {
+                continue;
+            }
+            List<PositionalCommentBase> lineComments = commentsByLine.get(comment.position());
+            if (lineComments == null) {
+                lineComments = new ArrayList<>();
+                commentsByLine.put(comment.position(), lineComments);
+            }
+            lineComments.add(comment);
+        }
+
+        // What DiffViewerActivity.onDataReady() does: index the diff, number the lines up
+        // to the highlighted one (the last line being the worst case) and build the items
+        int itemCount = sRunner.measure("show_diff", () -> {
+            ParsedDiff parsedDiff = new ParsedDiff(diff);
+            int lastLine = parsedDiff.getLineCount() - 1;
+            int highlightLine = parsedDiff.findLine(parsedDiff.getRightLine(lastLine), true);
+            adapter.setData(parsedDiff, commentsByLine, highlightLine, highlightLine, null);
+            return adapter.getItemCount();
+        });
+        assertTrue("Comments are missing", itemCount > new ParsedDiff(diff).getLineCount());
+    }
+}
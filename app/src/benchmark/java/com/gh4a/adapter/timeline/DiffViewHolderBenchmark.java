@@ -0,0 +1,58 @@
+package com.gh4a.adapter.timeline;
+
+import android.view.ContextThemeWrapper;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.widget.TextView;
+
+import com.gh4a.R;
+import com.gh4a.benchmark.BenchmarkRunner;
+import com.gh4a.benchmark.Fixtures;
+import com.gh4a.model.TimelineItem;
+import com.meisolsson.githubsdk.model.ReviewComment;
+
+import org.junit.AfterClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+public class DiffViewHolderBenchmark {
+    private static final BenchmarkRunner sRunner = new BenchmarkRunner("DiffViewHolder");
+
+    @AfterClass
+    public static void writeResults() throws IOException {
+        sRunner.writeResults();
+    }
+
+    @Test
+    public void bindDiffHunks() throws Exception {
+        ContextThemeWrapper context =
+                new ContextThemeWrapper(RuntimeEnvironment.application, R.style.AppTheme);
+        View view = LayoutInflater.from(context).inflate(R.layout.row_timeline_diff, null);
+        DiffViewHolder holder = new DiffViewHolder(view, "octo-org", "octo-repo", 42);
+
+        List<TimelineItem.Diff> diffs = new ArrayList<>();
+        for (ReviewComment comment : Fixtures.readList("review_comments.json", ReviewComment.class)) {
+            diffs.add(new TimelineItem.Diff(new TimelineItem.TimelineComment(comment, null)));
+        }
+
+        TextView hunkView = view.findViewById(R.id.diff_hunk);
+        int totalLength = sRunner.measure("bind_diff_hunks", () -> {
+            int length = 0;
+            for (TimelineItem.Diff diff : diffs) {
+                holder.bind(diff);
+                length += hunkView.getText().length();
+            }
+            return length;
+        });
+        assertTrue("Diff hunks are empty", totalLength > 0);
+    }
+}
@@ -0,0 +1,126 @@
+package com.gh4a.benchmark;
+
+import com.gh4a.BuildConfig;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+
+/**
+ * Minimal JMH-like harness for the JVM benchmarks: every measurement is warmed up first,
+ * then timed over a number of iterations. The results of a suite are printed and written
+ * as JSON to the directory given by the 'benchmark.outputDir' system property, so they can
+ * be compared between releases.
+ */
+public class BenchmarkRunner {
+    private static final int DEFAULT_WARMUP_ITERATIONS = 5;
+    private static final int DEFAULT_MEASURED_ITERATIONS = 15;
+
+    private final String mSuiteName;
+    private final List<Result> mResults = new ArrayList<>();
+
+    private static class Result {
+        final String name;
+        final long[] timings;
+
+        Result(String name, long[] timings) {
+            this.name = name;
+            this.timings = timings;
+        }
+
+        long median() {
+            return timings[timings.length / 2];
+        }
+
+        long mean() {
+            long sum = 0;
+            for (long timing : timings) {
+                sum += timing;
+            }
+            return sum / timings.length;
+        }
+    }
+
+    public BenchmarkRunner(String suiteName) {
+        mSuiteName = suiteName;
+    }
+
+    public <T> T measure(String name, Callable<T> block) throws Exception {
+        return measure(name, DEFAULT_WARMUP_ITERATIONS, DEFAULT_MEASURED_ITERATIONS, block);
+    }
+
+    /**
+     * Runs the block repeatedly and records its timings.
+     *
+     * @return the result of the last invocation, for sanity checks by the caller
+     */
+    public <T> T measure(String name, int warmupIterations, int measuredIterations,
+            Callable<T> block) throws Exception {
+        for (int i = 0; i < warmupIterations; i++) {
+            block.call();
+        }
+
+        long[] timings = new long[measuredIterations];
+        T result = null;
+        for (int i = 0; i < measuredIterations; i++) {
+            long start = System.nanoTime();
+            result = block.call();
+            timings[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(timings);
+
+        Result r = new Result(name, timings);
+        mResults.add(r);
+        System.out.println(String.format(Locale.US, "%s.%s: median %.3f ms, min %.3f ms, max %.3f ms",
+                mSuiteName, name, r.median() / 1E6, timings[0] / 1E6,
+                timings[timings.length - 1] / 1E6));
+        return result;
+    }
+
+    /**
+     * Writes all results recorded so far to &lt;outputDir&gt;/&lt;suite&gt;.json.
+     * Meant to be called from an {@code @AfterClass} method.
+     */
+    public void writeResults() throws IOException {
+        File dir = new File(System.getProperty("benchmark.outputDir", "build/benchmark-results"));
+        if (!dir.exists() && !dir.mkdirs()) {
+            throw new IOException("Could not create " + dir);
+        }
+
+        StringBuilder json = new StringBuilder();
+        json.append("{\n  \"suite\": ").append(quote(mSuiteName));
+        json.append(",\n  \"version\": ").append(quote(BuildConfig.VERSION_NAME));
+        json.append(",\n  \"timestamp\": ").append(System.currentTimeMillis());
+        json.append(",\n  \"results\": [");
+        for (int i = 0; i < mResults.size(); i++) {
+            Result r = mResults.get(i);
+            json.append(i == 0 ? "\n" : ",\n");
+            json.append("    {\"name\": ").append(quote(r.name));
+            json.append(", \"iterations\": ").append(r.timings.length);
+            json.append(", \"median_ns\": ").append(r.median());
+            json.append(", \"mean_ns\": ").append(r.mean());
+            json.append(", \"min_ns\": ").append(r.timings[0]);
+            json.append(", \"max_ns\": ").append(r.timings[r.timings.length - 1]);
+            json.append("}");
+        }
+        json.append("\n  ]\n}\n");
+
+        File file = new File(dir, mSuiteName + ".json");
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(file),
+                StandardCharsets.UTF_8)) {
+            writer.write(json.toString());
+        }
+    }
+
+    private static String quote(String value) {
+        return "\"" + value.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+    }
+}
@@ -0,0 +1,43 @@
+package com.gh4a.benchmark;
+
+import com.meisolsson.githubsdk.core.ServiceGenerator;
+import com.squareup.moshi.JsonAdapter;
+import com.squareup.moshi.Types;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Access to the checked in benchmark fixtures in resources/fixtures.
+ */
+public class Fixtures {
+    private Fixtures() {
+    }
+
+    public static String read(String name) throws IOException {
+        try (InputStream is = Fixtures.class.getResourceAsStream("/fixtures/" + name)) {
+            if (is == null) {
+                throw new IOException("Fixture " + name + " not found");
+            }
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = is.read(buffer)) > 0) {
+                out.write(buffer, 0, read);
+            }
+            return new String(out.toByteArray(), StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * Parses a JSON array fixture with the same Moshi instance used for API responses.
+     */
+    public static <T> List<T> readList(String name, Class<T> itemClass) throws IOException {
+        JsonAdapter<List<T>> adapter = ServiceGenerator.moshi.adapter(
+                Types.newParameterizedType(List.class, itemClass));
+        return adapter.fromJson(read(name));
+    }
+}
@@ -0,0 +1,57 @@
+package com.gh4a.resolver;
+
+import android.net.Uri;
+
+import com.gh4a.benchmark.BenchmarkRunner;
+import com.gh4a.benchmark.Fixtures;
+
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import androidx.fragment.app.FragmentActivity;
+
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+public class LinkParserBenchmark {
+    private static final BenchmarkRunner sRunner = new BenchmarkRunner("LinkParser");
+
+    private FragmentActivity mActivity;
+
+    @Before
+    public void createActivity() {
+        mActivity = Robolectric.buildActivity(BrowseFilter.class).get();
+    }
+
+    @AfterClass
+    public static void writeResults() throws IOException {
+        sRunner.writeResults();
+    }
+
+    @Test
+    public void parseUri() throws Exception {
+        List<Uri> uris = new ArrayList<>();
+        for (String link : Fixtures.read("links.txt").split("\n")) {
+            uris.add(Uri.parse(link));
+        }
+
+        int resolved = sRunner.measure("parse_uri", () -> {
+            int count = 0;
+            for (Uri uri : uris) {
+                if (LinkParser.parseUri(mActivity, uri, null) != null) {
+                    count++;
+                }
+            }
+            return count;
+        });
+        assertTrue("No links were resolved", resolved > 0);
+    }
+}
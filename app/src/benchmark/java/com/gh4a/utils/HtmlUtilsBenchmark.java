@@ -0,0 +1,89 @@
+package com.gh4a.utils;
+
+import android.content.Context;
+import android.graphics.drawable.ColorDrawable;
+import android.text.Html;
+import android.text.Spanned;
+import android.text.style.ImageSpan;
+
+import com.gh4a.benchmark.BenchmarkRunner;
+import com.gh4a.benchmark.Fixtures;
+import com.gh4a.resolver.BrowseFilter;
+import com.meisolsson.githubsdk.model.ReviewComment;
+
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+public class HtmlUtilsBenchmark {
+    private static final BenchmarkRunner sRunner = new BenchmarkRunner("HtmlUtils");
+
+    private final Html.ImageGetter mImageGetter = source -> {
+        ColorDrawable d = new ColorDrawable();
+        d.setBounds(0, 0, 10, 10);
+        return d;
+    };
+
+    private Context mContext;
+
+    @Before
+    public void setup() {
+        mContext = Robolectric.buildActivity(BrowseFilter.class).get();
+    }
+
+    @AfterClass
+    public static void writeResults() throws IOException {
+        sRunner.writeResults();
+    }
+
+    @Test
+    public void encodeLargeReadme() throws Exception {
+        String html = Fixtures.read("large_readme.html");
+        CharSequence result = sRunner.measure("encode_large_readme",
+                () -> HtmlUtils.encode(mContext, html, mImageGetter));
+
+        assertThat(result, is(notNullValue()));
+        Spanned spanned = (Spanned) result;
+        assertTrue("Result is empty", spanned.length() > 0);
+        assertTrue("Images are missing",
+                spanned.getSpans(0, spanned.length(), ImageSpan.class).length > 0);
+    }
+
+    @Test
+    public void encodeCommentThread() throws Exception {
+        List<String> bodies = new ArrayList<>();
+        for (ReviewComment comment : Fixtures.readList("review_comments.json", ReviewComment.class)) {
+            bodies.add(comment.bodyHtml());
+        }
+        int totalLength = sRunner.measure("encode_comment_thread", () -> {
+            int length = 0;
+            for (String body : bodies) {
+                length += HtmlUtils.encode(mContext, body, mImageGetter).length();
+            }
+            return length;
+        });
+        assertTrue("Result is empty", totalLength > 0);
+    }
+
+    @Test
+    public void rewriteRelativeUrls() throws Exception {
+        String html = Fixtures.read("large_readme.html");
+        String result = sRunner.measure("rewrite_relative_urls", () ->
+                HtmlUtils.rewriteRelativeUrls(html, "octo-org", "octo-repo", "master", "docs"));
+        assertTrue("Relative URLs were not rewritten",
+                result.contains("https://raw.github.com/octo-org/octo-repo/master/docs/images/"));
+    }
+}
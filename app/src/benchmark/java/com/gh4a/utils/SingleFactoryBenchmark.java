@@ -0,0 +1,38 @@
+package com.gh4a.utils;
+
+import com.gh4a.benchmark.BenchmarkRunner;
+import com.gh4a.benchmark.Fixtures;
+import com.gh4a.model.NotificationListLoadResult;
+import com.meisolsson.githubsdk.model.NotificationThread;
+
+import org.junit.AfterClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.IOException;
+import java.util.List;
+
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+public class SingleFactoryBenchmark {
+    private static final BenchmarkRunner sRunner = new BenchmarkRunner("SingleFactory");
+
+    @AfterClass
+    public static void writeResults() throws IOException {
+        sRunner.writeResults();
+    }
+
+    @Test
+    public void notificationsToResult() throws Exception {
+        List<NotificationThread> notifications =
+                Fixtures.readList("notifications.json", NotificationThread.class);
+
+        NotificationListLoadResult result = sRunner.measure("notifications_to_result",
+                () -> SingleFactory.notificationsToResult(notifications));
+        // Every notification plus one header per repository
+        assertTrue("Notifications are missing",
+                result.notifications.size() > notifications.size());
+    }
+}
@@ -0,0 +1,43 @@
+package com.gh4a.utils;
+
+import com.gh4a.benchmark.BenchmarkRunner;
+import com.gh4a.benchmark.Fixtures;
+
+import org.junit.AfterClass;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class StringUtilsBenchmark {
+    private static final BenchmarkRunner sRunner = new BenchmarkRunner("StringUtils");
+
+    @AfterClass
+    public static void writeResults() throws IOException {
+        sRunner.writeResults();
+    }
+
+    @Test
+    public void extractDiffHunkLineNumbers() throws Exception {
+        List<String> hunkHeaders = new ArrayList<>();
+        for (String line : Fixtures.read("large_diff.patch").split("\n")) {
+            if (line.startsWith("@@")) {
+                hunkHeaders.add(line);
+            }
+        }
+
+        int parsed = sRunner.measure("extract_diff_hunk_line_numbers", 20, 100, () -> {
+            int count = 0;
+            for (String header : hunkHeaders) {
+                if (StringUtils.extractDiffHunkLineNumbers(header) != null) {
+                    count++;
+                }
+            }
+            return count;
+        });
+        assertEquals("Not all hunk headers were parsed", hunkHeaders.size(), parsed);
+    }
+}
@@ -6,7 +6,18 @@ window.applyLineWrapping = function(enabled) {
         (document.head || document.body).appendChild(s);
     }
 
-    s.textContent = enabled ? 'pre { white-space: pre-wrap }' : '';
+    var css = enabled ? 'pre { white-space: pre-wrap }' : '';
+    if (s.textContent == css) {
+        return;
+    }
+    function apply() {
+        s.textContent = css;
+    }
+    if (window.relayoutCodeBlocks) {
+        window.relayoutCodeBlocks(apply);
+    } else {
+        apply();
+    }
 };
 
 window.addClickListeners = function() {
@@ -120,3 +131,185 @@ window.scrollToElement = function(elemName) {
          window.scrollToHighlight();
     }
 }
+
+// Chunked code view: the file is pulled from the CodeBlocks interface in blocks of lines,
+// which are appended one after another so the first lines show up right away.
+// Blocks are highlighted once they come near the viewport; in virtualized mode, they
+// aren't highlighted at all and blocks far from the viewport are replaced by placeholders.
+// Each block is highlighted on its own, so tokens crossing a block boundary (block
+// comments, multi-line strings) are highlighted wrongly on one side of it.
+window.loadCodeBlocks = function(blockCount, lang, highlight, virtualize, from, to) {
+    var pre = document.getElementById("content");
+    var blocks = [];
+    var last = to < 0 ? from : to;
+    var scrolledToHighlight = from < 0;
+    var maxHighlightedBlockLength = 65536;
+
+    function isNearViewport(elem) {
+        var rect = elem.getBoundingClientRect();
+        return rect.bottom > -window.innerHeight && rect.top < 2 * window.innerHeight;
+    }
+
+    function fillBlock(block) {
+        var text = CodeBlocks.getBlock(block.index);
+        if (highlight && text.length < maxHighlightedBlockLength && isNearViewport(block.elem)) {
+            block.elem.innerHTML = PR.prettyPrintOne(text, lang, true);
+            block.highlighted = true;
+        } else {
+            var lines = text.split("\n");
+            var html = "<ol class='linenums'>";
+            for (var i = 0; i < lines.length; i++) {
+                // Like prettify, keep empty lines from collapsing
+                html += "<li class='L" + (i % 10) + "'>" + (lines[i] || "&#160;") + "</li>";
+            }
+            block.elem.innerHTML = html + "</ol>";
+        }
+        block.elem.style.height = "";
+        block.attached = true;
+
+        if (from > 0) {
+            var lineElems = block.elem.getElementsByTagName("li");
+            for (var i = 0; i < lineElems.length; i++) {
+                var line = block.firstLine + i;
+                if (line >= from && line <= last) {
+                    lineElems[i].className += " highlighted";
+                }
+            }
+        }
+    }
+
+    function detachBlock(block) {
+        block.elem.style.height = block.elem.offsetHeight + "px";
+        block.elem.innerHTML = "";
+        block.attached = false;
+    }
+
+    function updateBlock(block) {
+        if (isNearViewport(block.elem)) {
+            if (!block.attached || (highlight && !block.highlighted)) {
+                fillBlock(block);
+            }
+        } else if (virtualize && block.attached) {
+            detachBlock(block);
+        }
+    }
+
+    function findLineElem(line) {
+        for (var i = 0; i < blocks.length; i++) {
+            var block = blocks[i];
+            if (block.firstLine <= line && block.firstLine + block.lineCount > line) {
+                if (!block.attached) {
+                    fillBlock(block);
+                }
+                return block.elem.getElementsByTagName("li")[line - block.firstLine];
+            }
+        }
+        return null;
+    }
+
+    function scrollToHighlightedLines(block) {
+        if (scrolledToHighlight || block.firstLine + block.lineCount <= last) {
+            return;
+        }
+        scrolledToHighlight = true;
+        var firstElem = findLineElem(from), lastElem = findLineElem(last);
+        if (firstElem == null || lastElem == null) {
+            return;
+        }
+
+        var top = 0, bottom = lastElem.offsetHeight;
+        for (var elem = firstElem; elem != null; elem = elem.offsetParent) {
+            top += elem.offsetTop;
+        }
+        for (var elem = lastElem; elem != null; elem = elem.offsetParent) {
+            bottom += elem.offsetTop;
+        }
+        window.highlightTop = top;
+        window.highlightBottom = bottom;
+        window.scrollToHighlight();
+        for (var i = 0; i < blocks.length; i++) {
+            updateBlock(blocks[i]);
+        }
+    }
+
+    function loadNextBlock() {
+        var index = blocks.length;
+        if (index >= blockCount) {
+            return;
+        }
+        var firstLine = CodeBlocks.getFirstLine(index);
+        var elem = document.createElement("div");
+        elem.style.counterReset = "linenumber " + (firstLine - 1);
+        elem.setAttribute("data-first-line", firstLine);
+        pre.appendChild(elem);
+
+        var block = { index: index, elem: elem, firstLine: firstLine,
+                attached: false, highlighted: false };
+        blocks.push(block);
+        fillBlock(block);
+        block.lineCount = elem.getElementsByTagName("li").length;
+        scrollToHighlightedLines(block);
+        if (virtualize && !isNearViewport(elem)) {
+            detachBlock(block);
+        }
+
+        if (index == 0) {
+            NativeClient.onRenderingDone();
+        }
+        setTimeout(loadNextBlock, 0);
+    }
+
+    // Changing the layout (e.g. line wrapping) changes the height of all lines, so the
+    // heights kept for detached blocks must be measured again. The block at the top of
+    // the viewport is kept in place while doing so.
+    window.relayoutCodeBlocks = function(changeLayout) {
+        var anchor = null;
+        for (var i = 0; i < blocks.length && anchor == null; i++) {
+            if (blocks[i].elem.getBoundingClientRect().bottom > 0) {
+                anchor = blocks[i];
+            }
+        }
+        var anchorTop = anchor != null ? anchor.elem.getBoundingClientRect().top : 0;
+
+        changeLayout();
+        for (var i = 0; i < blocks.length; i++) {
+            if (!blocks[i].attached) {
+                fillBlock(blocks[i]);
+                detachBlock(blocks[i]);
+            }
+        }
+        if (anchor != null) {
+            window.scrollBy(0, anchor.elem.getBoundingClientRect().top - anchorTop);
+        }
+        for (var i = 0; i < blocks.length; i++) {
+            updateBlock(blocks[i]);
+        }
+    };
+
+    var updatePending = false;
+    window.addEventListener("scroll", function() {
+        if (updatePending) {
+            return;
+        }
+        updatePending = true;
+        window.requestAnimationFrame(function() {
+            updatePending = false;
+            for (var i = 0; i < blocks.length; i++) {
+                updateBlock(blocks[i]);
+            }
+        });
+    });
+
+    pre.addEventListener("click", function(event) {
+        var target = event.target;
+        if (target.tagName != "LI") {
+            return;
+        }
+        var ol = target.parentNode;
+        var index = Array.prototype.indexOf.call(ol.children, target);
+        var firstLine = parseInt(ol.parentNode.getAttribute("data-first-line"), 10);
+        NativeClient.onLineTouched(firstLine + index);
+    });
+
+    loadNextBlock();
+};
@@ -24,6 +24,7 @@ import android.util.LongSparseArray;
 
 import com.gh4a.fragment.SettingsFragment;
 import com.gh4a.utils.StringUtils;
+import com.gh4a.utils.WebViewPool;
 import com.gh4a.worker.NotificationsWorker;
 import com.meisolsson.githubsdk.model.User;
 import com.tspoon.traceur.Traceur;
@@ -33,6 +34,8 @@ import org.ocpsoft.prettytime.PrettyTime;
 import java.util.HashSet;
 import java.util.Set;
 
+import io.reactivex.schedulers.Schedulers;
+
 import androidx.annotation.NonNull;
 import androidx.appcompat.app.AppCompatDelegate;
 import androidx.multidex.MultiDexApplication;
@@ -158,6 +161,17 @@ public class Gh4Application extends MultiDexApplication implements
         }
     }
 
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        // The pool only warms up a new WebView when a viewer obtains one, so don't drop it
+        // just because the UI went to the background (UI_HIDDEN lies between the running
+        // levels and BACKGROUND), only when the system actually needs the memory
+        if (level >= TRIM_MEMORY_RUNNING_LOW && level != TRIM_MEMORY_UI_HIDDEN) {
+            WebViewPool.clear();
+        }
+    }
+
     public PrettyTime getPrettyTimeInstance() {
         return mPt;
     }
@@ -239,6 +253,7 @@ public class Gh4Application extends MultiDexApplication implements
                 .remove(KEY_PREFIX_USER_ID + login)
                 .apply();
 
+        Schedulers.io().scheduleDirect(() -> ServiceFactory.removeAccountCaches(login));
         NotificationsWorker.cancel(this);
     }
 
@@ -0,0 +1,185 @@
+package com.gh4a;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+
+import okhttp3.Cache;
+import okhttp3.HttpUrl;
+
+/**
+ * Manages the on-disk HTTP caches. Responses are stored in separate partitions per account
+ * and content class, each with its own size budget, so that switching accounts or loading
+ * a huge diff doesn't evict the small API responses we need all the time.
+ */
+public class HttpCacheManager {
+    private static final String TAG = "HttpCacheManager";
+
+    public enum Partition {
+        // Regular (JSON) API responses
+        API("api-http", R.integer.api_http_cache_size_mb),
+        // Responses carrying file contents, diffs and patches, which can be huge
+        RAW("raw-http", R.integer.raw_http_cache_size_mb),
+        // Images, which are mostly public and thus not split per account
+        IMAGE("image-http", R.integer.image_http_cache_size_mb);
+
+        private final String mDirName;
+        private final int mSizeResId;
+
+        Partition(String dirName, int sizeResId) {
+            mDirName = dirName;
+            mSizeResId = sizeResId;
+        }
+
+        /**
+         * Returns the partition for responses of the given API endpoint. Endpoints are
+         * classified up front, as OkHttp picks the cache before the response is known.
+         */
+        public static Partition forUrl(HttpUrl url) {
+            List<String> segments = url.pathSegments();
+            int count = segments.size();
+            String first = segments.get(0);
+            if ("repos".equals(first) && count >= 4) {
+                String kind = segments.get(3);
+                switch (kind) {
+                    // Commits and comparisons include the patches of all changed files
+                    case "commits": return count == 5 ? RAW : API;
+                    case "compare": return RAW;
+                    case "contents": return RAW;
+                    case "pulls": return count == 6 && "files".equals(segments.get(5)) ? RAW : API;
+                    case "git": return count >= 5 && "blobs".equals(segments.get(4)) ? RAW : API;
+                }
+            } else if ("gists".equals(first)) {
+                // Single gists (and their revisions) include the contents of their files
+                if (count == 2) {
+                    String id = segments.get(1);
+                    return id.isEmpty() || "public".equals(id) || "starred".equals(id) ? API : RAW;
+                }
+                if (count == 3) {
+                    String sub = segments.get(2);
+                    return "star".equals(sub) || "comments".equals(sub) || "forks".equals(sub)
+                            || "commits".equals(sub) ? API : RAW;
+                }
+            }
+            return API;
+        }
+    }
+
+    private final Context mContext;
+    private final HashMap<String, Cache> mCaches = new HashMap<>();
+
+    HttpCacheManager(Context context) {
+        mContext = context.getApplicationContext();
+    }
+
+    public synchronized Cache getCache(Partition partition, @Nullable String login) {
+        String dirName = partition.mDirName;
+        if (login != null && partition != Partition.IMAGE) {
+            dirName += "-" + login.toLowerCase(Locale.US);
+        }
+        Cache cache = mCaches.get(dirName);
+        if (cache == null) {
+            long maxSize = mContext.getResources().getInteger(partition.mSizeResId) * 1024L * 1024L;
+            cache = new Cache(new File(mContext.getCacheDir(), dirName), maxSize);
+            mCaches.put(dirName, cache);
+        }
+        return cache;
+    }
+
+    public long getUsedSize() {
+        long size = 0;
+        for (File dir : getCacheDirs()) {
+            size += getDirectorySize(dir);
+        }
+        return size;
+    }
+
+    public synchronized void clear() {
+        for (File dir : getCacheDirs()) {
+            Cache cache = mCaches.get(dir.getName());
+            if (cache == null) {
+                deleteDirectory(dir);
+                continue;
+            }
+            try {
+                cache.evictAll();
+            } catch (IOException e) {
+                Log.w(TAG, "Could not clear cache " + dir, e);
+            }
+        }
+    }
+
+    /**
+     * Deletes the caches of the given account.
+     *
+     * @return the caches of the account that were open; they can't be used anymore
+     */
+    public synchronized List<Cache> removeAccount(String login) {
+        String suffix = "-" + login.toLowerCase(Locale.US);
+        List<Cache> removedCaches = new ArrayList<>();
+        for (Partition partition : Partition.values()) {
+            String dirName = partition.mDirName + suffix;
+            Cache cache = mCaches.remove(dirName);
+            if (cache == null) {
+                deleteDirectory(new File(mContext.getCacheDir(), dirName));
+                continue;
+            }
+            removedCaches.add(cache);
+            try {
+                cache.delete();
+            } catch (IOException e) {
+                Log.w(TAG, "Could not delete cache " + dirName, e);
+            }
+        }
+        return removedCaches;
+    }
+
+    private File[] getCacheDirs() {
+        File[] dirs = mContext.getCacheDir().listFiles(file -> {
+            if (!file.isDirectory()) {
+                return false;
+            }
+            for (Partition partition : Partition.values()) {
+                if (file.getName().startsWith(partition.mDirName)) {
+                    return true;
+                }
+            }
+            return false;
+        });
+        return dirs != null ? dirs : new File[0];
+    }
+
+    private static void deleteDirectory(File dir) {
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (file.isDirectory()) {
+                    deleteDirectory(file);
+                } else {
+                    file.delete();
+                }
+            }
+        }
+        dir.delete();
+    }
+
+    private static long getDirectorySize(File dir) {
+        File[] files = dir.listFiles();
+        if (files == null) {
+            return 0;
+        }
+        long size = 0;
+        for (File file : files) {
+            size += file.isDirectory() ? getDirectorySize(file) : file.length();
+        }
+        return size;
+    }
+}
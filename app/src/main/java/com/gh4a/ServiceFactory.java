@@ -3,18 +3,35 @@ package com.gh4a;
 import android.content.Context;
 import android.util.Log;
 
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+import androidx.core.util.ObjectsCompat;
+
 import com.meisolsson.githubsdk.core.ByteArrayResponseConverterFactory;
 import com.meisolsson.githubsdk.core.GitHubPaginationInterceptor;
 import com.meisolsson.githubsdk.core.ServiceGenerator;
 import com.meisolsson.githubsdk.core.StringResponseConverterFactory;
 
-import java.io.File;
+import com.gh4a.utils.ApiHelpers;
+import com.gh4a.utils.Optional;
+
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 
+import io.reactivex.Observable;
+import io.reactivex.Single;
+import io.reactivex.functions.Function;
+
 import okhttp3.Cache;
 import okhttp3.CacheControl;
+import okhttp3.Call;
+import okhttp3.HttpUrl;
 import okhttp3.Interceptor;
 import okhttp3.OkHttpClient;
 import okhttp3.Request;
@@ -25,6 +42,7 @@ import retrofit2.adapter.rxjava2.RxJava2CallAdapterFactory;
 import retrofit2.converter.moshi.MoshiConverterFactory;
 
 public class ServiceFactory {
+    private static final String API_BASE_URL = "https://api.github.com";
     private static final String DEFAULT_HEADER_ACCEPT = "application/vnd.github.v3+json," +
             "application/vnd.github.v3.raw+json," +
             "application/vnd.github.v3.html+json";
@@ -43,12 +61,55 @@ public class ServiceFactory {
         return response;
     };
 
-    private final static Interceptor CACHE_BYPASS_INTERCEPTOR = chain -> {
-        Request request = chain.request()
-                .newBuilder()
-                .addHeader("Cache-Control", "no-cache")
-                .build();
-        return chain.proceed(request);
+    private final static Interceptor SINGLE_FLIGHT_INTERCEPTOR = new SingleFlightInterceptor();
+
+    private final static Interceptor MODIFICATION_TRACKING_INTERCEPTOR = chain -> {
+        Response response = chain.proceed(chain.request());
+        // Record the time after the request finished, so that responses
+        // received while it was in flight are considered outdated as well
+        String method = chain.request().method();
+        if (!"GET".equals(method) && !"HEAD".equals(method)) {
+            long now = System.currentTimeMillis();
+            String ownLogin = Gh4Application.get().getAuthLogin();
+            for (String scope : getResourceScopes(chain.request().url(), ownLogin)) {
+                sLastModificationTimes.put(scope, now);
+            }
+        }
+        return response;
+    };
+
+    private final static Interceptor SERVICE_CONFIG_INTERCEPTOR = chain -> {
+        Request original = chain.request();
+        ServiceConfig config = original.tag(ServiceConfig.class);
+
+        Request.Builder requestBuilder = original.newBuilder()
+                .method(original.method(), original.body());
+
+        String tokenToUse = config.mToken != null
+                ? config.mToken : Gh4Application.get().getAuthToken();
+        setAuthorization(requestBuilder, tokenToUse);
+        if (config.mPageSize != null) {
+            requestBuilder.url(original.url().newBuilder()
+                    .addQueryParameter("per_page", String.valueOf(config.mPageSize))
+                    .build());
+        }
+        if (original.header("Accept") == null) {
+            final String header;
+            if (config.mAcceptHeader != null) {
+                header = config.mAcceptHeader;
+            } else {
+                header = DEFAULT_HEADER_ACCEPT;
+            }
+            requestBuilder.addHeader("Accept", header);
+        }
+        if (config.mBypassCache) {
+            requestBuilder.addHeader("Cache-Control", "no-cache");
+        }
+        if (config.mCacheOnly) {
+            requestBuilder.header("Cache-Control", CacheControl.FORCE_CACHE.toString());
+        }
+
+        return chain.proceed(requestBuilder.build());
     };
 
     // FIXME: The notifications endpoint currently returns invalid/empty ETags. GH support
@@ -76,7 +137,8 @@ public class ServiceFactory {
         // Github sends max-age=60, which leads to problems when we modify stuff and
         // reload data afterwards. Make sure to constrain max age to 2 seconds to only avoid
         // network calls in cases where the exact same data is loaded from multiple places
-        // at the same time, and use ETags to avoid useless data transfers otherwise.
+        // shortly after each other, and use ETags to avoid useless data transfers otherwise.
+        // Loads happening at the same time are handled by SINGLE_FLIGHT_INTERCEPTOR.
         if (origCacheControl.maxAgeSeconds() <= 2) {
             return response;
         }
@@ -109,9 +171,17 @@ public class ServiceFactory {
             .addConverterFactory(MoshiConverterFactory.create(ServiceGenerator.moshi));
 
     private static OkHttpClient sApiHttpClient;
+    private static OkHttpClient sApiServiceHttpClient;
+    private static OkHttpClient sNoRedirectHttpClient;
     private static OkHttpClient sImageHttpClient;
+    private static OkHttpClient sDownloadHttpClient;
+    private static HttpCacheManager sCacheManager;
 
-    private final static HashMap<String, Object> sCache = new HashMap<>();
+    private final static ConcurrentHashMap<ServiceConfig, Object> sCache = new ConcurrentHashMap<>();
+    private final static HashMap<Cache, OkHttpClient> sApiServiceHttpClientsByCache = new HashMap<>();
+    // Time of the last modifying request that touched a given resource scope,
+    // see getResourceScopes()
+    private final static Map<String, Long> sLastModificationTimes = new ConcurrentHashMap<>();
 
     public static <S> S get(Class<S> serviceClass, boolean bypassCache) {
         return get(serviceClass, bypassCache, null, null, null);
@@ -119,88 +189,306 @@ public class ServiceFactory {
 
     public static <S> S get(Class<S> serviceClass, boolean bypassCache, String acceptHeader,
             String token, Integer pageSize) {
-        String key = makeKey(serviceClass, bypassCache, acceptHeader, token, pageSize);
-        S service = (S) sCache.get(key);
-        if (service == null) {
-            service = createService(serviceClass, bypassCache, acceptHeader, token, pageSize);
-            sCache.put(key, service);
-        }
-        return service;
+        return get(serviceClass, bypassCache, false, acceptHeader, token, pageSize);
     }
 
-    private static String makeKey(Class<?> serviceClass, boolean bypassCache,
+    private static <S> S get(Class<S> serviceClass, boolean bypassCache, boolean cacheOnly,
             String acceptHeader, String token, Integer pageSize) {
-        return String.format(Locale.US, "%s-%d-%s-%s-%d",
-                serviceClass.getSimpleName(), bypassCache ? 1 : 0,
-                acceptHeader != null ? acceptHeader : "",
-                token != null ? token : "", pageSize != null ? pageSize : 0);
+        ServiceConfig config = new ServiceConfig(serviceClass, bypassCache, cacheOnly,
+                acceptHeader, token, pageSize);
+        S service = (S) sCache.get(config);
+        if (service == null) {
+            service = createService(serviceClass, config);
+            // If another thread was faster in creating the service, use its instance
+            S existingService = (S) sCache.putIfAbsent(config, service);
+            if (existingService != null) {
+                service = existingService;
+            }
+        }
+        return service;
     }
 
-    private static <S> S createService(Class<S> serviceClass, final boolean bypassCache,
-            final String acceptHeader, final String token, final Integer pageSize) {
-        OkHttpClient.Builder clientBuilder = sApiHttpClient.newBuilder()
-                .addInterceptor(PAGINATION_INTERCEPTOR)
-                .addNetworkInterceptor(ETAG_WORKAROUND_INTERCEPTOR)
-                .addNetworkInterceptor(CACHE_MAX_AGE_INTERCEPTOR)
-                .addInterceptor(chain -> {
-                    Request original = chain.request();
-
-                    Request.Builder requestBuilder = original.newBuilder()
-                            .method(original.method(), original.body());
+    /**
+     * Performs a request in a stale-while-revalidate fashion: if the response is in the
+     * HTTP cache, it is emitted immediately, followed by the response fetched from the
+     * network if the latter has changed. Cached responses received before the last
+     * modifying request that touched the same repository or user are ignored, regardless
+     * of the service that request was done with.
+     */
+    public static <S, T> Observable<T> getWithCachedResult(Class<S> serviceClass,
+            boolean bypassCache, Function<S, Single<retrofit2.Response<T>>> requestFunction) {
+        Single<retrofit2.Response<T>> networkSingle =
+                Single.defer(() -> requestFunction.apply(get(serviceClass, bypassCache)));
+        if (bypassCache) {
+            return networkSingle
+                    .map(ApiHelpers::throwOnFailure)
+                    .toObservable();
+        }
 
-                    String tokenToUse = token != null
-                            ? token : Gh4Application.get().getAuthToken();
-                    if (tokenToUse != null) {
-                        requestBuilder.header("Authorization", "Token " + tokenToUse);
-                    }
-                    if (pageSize != null) {
-                        requestBuilder.url(original.url().newBuilder()
-                                .addQueryParameter("per_page", String.valueOf(pageSize))
-                                .build());
-                    }
-                    if (original.header("Accept") == null) {
-                        final String header;
-                        if (acceptHeader != null) {
-                            header = acceptHeader;
-                        } else {
-                            header = DEFAULT_HEADER_ACCEPT;
-                        }
-                        requestBuilder.addHeader("Accept", header);
+        S cacheOnlyService = get(serviceClass, false, true, null, null, null);
+        return Single.defer(() -> requestFunction.apply(cacheOnlyService))
+                .filter(response -> response.isSuccessful()
+                        && !isModifiedSince(response.raw().request().url(),
+                                response.raw().receivedResponseAtMillis()))
+                .map(Optional::of)
+                // A failure to read the cache isn't fatal, we still have the network
+                .onErrorComplete()
+                .toSingle(Optional.absent())
+                .flatMapObservable(cachedResponseOpt -> {
+                    if (!cachedResponseOpt.isPresent()) {
+                        return networkSingle
+                                .map(ApiHelpers::throwOnFailure)
+                                .toObservable();
                     }
-
-                    return chain.proceed(requestBuilder.build());
+                    retrofit2.Response<T> cachedResponse = cachedResponseOpt.get();
+                    String cachedETag = cachedResponse.headers().get("ETag");
+                    Observable<T> networkObservable = networkSingle
+                            .filter(response -> cachedETag == null
+                                    || !cachedETag.equals(response.headers().get("ETag")))
+                            .map(ApiHelpers::throwOnFailure)
+                            .toObservable()
+                            // Keep showing the cached data if we're offline
+                            .onErrorResumeNext(error -> error instanceof IOException
+                                    ? Observable.empty() : Observable.error(error));
+                    return Observable.just(cachedResponse.body())
+                            .concatWith(networkObservable)
+                            // ETags may differ for identical content, e.g. due to compression
+                            .distinctUntilChanged();
                 });
+    }
 
-        if (BuildConfig.DEBUG) {
-            clientBuilder.addInterceptor(LOGGING_INTERCEPTOR);
-            clientBuilder.addInterceptor(CACHE_STATUS_INTERCEPTOR);
+    private static boolean isModifiedSince(HttpUrl url, long timestamp) {
+        String ownLogin = Gh4Application.get().getAuthLogin();
+        for (String scope : getResourceScopes(url, ownLogin)) {
+            Long lastModificationTime = sLastModificationTimes.get(scope);
+            if (lastModificationTime != null && lastModificationTime >= timestamp) {
+                return true;
+            }
         }
-        if (bypassCache) {
-            clientBuilder.addInterceptor(CACHE_BYPASS_INTERCEPTOR);
+        return false;
+    }
+
+    /**
+     * Returns the repositories and users whose data may change when modifying the
+     * given API resource, e.g. 'repos/owner/name' or 'users/login'. Requests to
+     * endpoints of the authenticated user are attributed to that user, and following
+     * or starring also touches the user or repository that is followed or starred.
+     */
+    @VisibleForTesting
+    static List<String> getResourceScopes(HttpUrl url, @Nullable String ownLogin) {
+        List<String> segments = url.pathSegments();
+        List<String> scopes = new ArrayList<>();
+        String first = segments.get(0);
+        if ("repos".equals(first) && segments.size() >= 3) {
+            scopes.add(makeRepoScope(segments.get(1), segments.get(2)));
+        } else if (("users".equals(first) || "orgs".equals(first)) && segments.size() >= 2) {
+            scopes.add(makeUserScope(segments.get(1)));
+        } else if ("user".equals(first)) {
+            if (ownLogin != null) {
+                scopes.add(makeUserScope(ownLogin));
+            }
+            String kind = segments.size() >= 2 ? segments.get(1) : null;
+            if ("following".equals(kind) && segments.size() >= 3) {
+                scopes.add(makeUserScope(segments.get(2)));
+            } else if (("starred".equals(kind) || "subscriptions".equals(kind))
+                    && segments.size() >= 4) {
+                scopes.add(makeRepoScope(segments.get(2), segments.get(3)));
+            }
+        } else {
+            scopes.add(first);
+            // e.g. gists are listed per user as well
+            if (ownLogin != null) {
+                scopes.add(makeUserScope(ownLogin));
+            }
         }
+        return scopes;
+    }
 
-        Retrofit retrofit = RETROFIT_BUILDER
-                .baseUrl("https://api.github.com")
-                .client(clientBuilder.build())
-                .build();
+    private static String makeRepoScope(String owner, String name) {
+        return "repos/" + owner.toLowerCase(Locale.US) + "/" + name.toLowerCase(Locale.US);
+    }
+
+    private static String makeUserScope(String login) {
+        return "users/" + login.toLowerCase(Locale.US);
+    }
+
+    private static <S> S createService(Class<S> serviceClass, ServiceConfig config) {
+        Call.Factory callFactory = new ServiceCallFactory(config);
+        final Retrofit retrofit;
+        // The builder is shared, so make sure concurrent callers don't mix up their settings
+        synchronized (RETROFIT_BUILDER) {
+            retrofit = RETROFIT_BUILDER
+                    .baseUrl(API_BASE_URL)
+                    .callFactory(callFactory)
+                    .build();
+        }
         return retrofit.create(serviceClass);
     }
 
-    public static OkHttpClient.Builder getHttpClientBuilder() {
-        return sApiHttpClient.newBuilder();
+    private static OkHttpClient getApiServiceHttpClient(Cache cache) {
+        synchronized (sApiServiceHttpClientsByCache) {
+            OkHttpClient client = sApiServiceHttpClientsByCache.get(cache);
+            if (client == null) {
+                // Clients derived via newBuilder() share connection pool and dispatcher
+                client = sApiServiceHttpClient.newBuilder().cache(cache).build();
+                sApiServiceHttpClientsByCache.put(cache, client);
+            }
+            return client;
+        }
+    }
+
+    public static OkHttpClient getNoRedirectHttpClient() {
+        return sNoRedirectHttpClient;
     }
 
     public static OkHttpClient getImageHttpClient() {
         return sImageHttpClient;
     }
 
+    /**
+     * Returns a client without HTTP cache, for callers that store the responses themselves.
+     */
+    public static OkHttpClient getDownloadHttpClient() {
+        return sDownloadHttpClient;
+    }
+
+    /**
+     * Returns a builder for URLs of API endpoints, for requests made without a service.
+     */
+    public static HttpUrl.Builder newApiUrlBuilder() {
+        return HttpUrl.get(API_BASE_URL).newBuilder();
+    }
+
+    /**
+     * Returns a builder for a request to the given API URL, authorized like the requests
+     * made by services, for callers that need to handle the raw response themselves.
+     */
+    public static Request.Builder newApiRequestBuilder(HttpUrl url) {
+        Request.Builder builder = new Request.Builder().url(url);
+        setAuthorization(builder, Gh4Application.get().getAuthToken());
+        return builder;
+    }
+
+    private static void setAuthorization(Request.Builder builder, @Nullable String token) {
+        if (token != null) {
+            builder.header("Authorization", "Token " + token);
+        }
+    }
+
+    public static HttpCacheManager getCacheManager() {
+        return sCacheManager;
+    }
+
+    /**
+     * Deletes the HTTP caches of the given account, along with the clients using them.
+     * Does disk I/O, so must not be called on the main thread.
+     */
+    public static void removeAccountCaches(String login) {
+        List<Cache> removedCaches = sCacheManager.removeAccount(login);
+        synchronized (sApiServiceHttpClientsByCache) {
+            sApiServiceHttpClientsByCache.keySet().removeAll(removedCaches);
+        }
+    }
+
     static void initClient(Context context) {
-        int twentyMB = 20 * 1024 * 1024;
+        sCacheManager = new HttpCacheManager(context);
         sApiHttpClient = new OkHttpClient.Builder()
-                .cache(new Cache(new File(context.getCacheDir(), "api-http"), twentyMB))
+                .cache(sCacheManager.getCache(HttpCacheManager.Partition.API, null))
                 .build();
         sImageHttpClient = sApiHttpClient.newBuilder()
-                .cache(new Cache(new File(context.getCacheDir(), "image-http"), twentyMB))
+                .cache(sCacheManager.getCache(HttpCacheManager.Partition.IMAGE, null))
+                .build();
+        sNoRedirectHttpClient = sApiHttpClient.newBuilder()
+                .followRedirects(false)
+                .build();
+        sDownloadHttpClient = sApiHttpClient.newBuilder()
+                .cache(null)
                 .build();
+
+        // All API services share this client; their individual settings are passed
+        // to the interceptors via the ServiceConfig tag of each request
+        OkHttpClient.Builder apiServiceClientBuilder = sApiHttpClient.newBuilder()
+                .addInterceptor(PAGINATION_INTERCEPTOR)
+                .addInterceptor(MODIFICATION_TRACKING_INTERCEPTOR)
+                .addNetworkInterceptor(ETAG_WORKAROUND_INTERCEPTOR)
+                .addNetworkInterceptor(CACHE_MAX_AGE_INTERCEPTOR)
+                .addInterceptor(SERVICE_CONFIG_INTERCEPTOR);
+        if (BuildConfig.DEBUG) {
+            apiServiceClientBuilder.addInterceptor(LOGGING_INTERCEPTOR);
+            apiServiceClientBuilder.addInterceptor(CACHE_STATUS_INTERCEPTOR);
+        }
+        // Needs to come last, as it relies on all headers being present
+        apiServiceClientBuilder.addInterceptor(SINGLE_FLIGHT_INTERCEPTOR);
+        sApiServiceHttpClient = apiServiceClientBuilder.build();
+    }
+
+    // Settings of a service instance; also attached to each request done by the service
+    private static class ServiceConfig {
+        private final Class<?> mServiceClass;
+        private final boolean mBypassCache;
+        private final boolean mCacheOnly;
+        private final String mAcceptHeader;
+        private final String mToken;
+        private final Integer mPageSize;
+
+        public ServiceConfig(Class<?> serviceClass, boolean bypassCache, boolean cacheOnly,
+                String acceptHeader, String token, Integer pageSize) {
+            mServiceClass = serviceClass;
+            mBypassCache = bypassCache;
+            mCacheOnly = cacheOnly;
+            mAcceptHeader = acceptHeader;
+            mToken = token;
+            mPageSize = pageSize;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof ServiceConfig)) {
+                return false;
+            }
+            ServiceConfig other = (ServiceConfig) o;
+            return mServiceClass == other.mServiceClass
+                    && mBypassCache == other.mBypassCache
+                    && mCacheOnly == other.mCacheOnly
+                    && ObjectsCompat.equals(mAcceptHeader, other.mAcceptHeader)
+                    && ObjectsCompat.equals(mToken, other.mToken)
+                    && ObjectsCompat.equals(mPageSize, other.mPageSize);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = mServiceClass.hashCode();
+            result = 31 * result + (mBypassCache ? 1 : 0);
+            result = 31 * result + (mCacheOnly ? 1 : 0);
+            result = 31 * result + (mAcceptHeader != null ? mAcceptHeader.hashCode() : 0);
+            result = 31 * result + (mToken != null ? mToken.hashCode() : 0);
+            result = 31 * result + (mPageSize != null ? mPageSize : 0);
+            return result;
+        }
+    }
+
+    // Tags the requests with the service's config and stores the responses in the cache
+    // partition matching the requested endpoint and the account that is active at the
+    // time the request is made
+    private static class ServiceCallFactory implements Call.Factory {
+        private final ServiceConfig mConfig;
+
+        public ServiceCallFactory(ServiceConfig config) {
+            mConfig = config;
+        }
+
+        @Override
+        public Call newCall(Request request) {
+            String login = mConfig.mToken == null ? Gh4Application.get().getAuthLogin() : null;
+            Cache cache = sCacheManager.getCache(
+                    HttpCacheManager.Partition.forUrl(request.url()), login);
+            Request taggedRequest = request.newBuilder()
+                    .tag(ServiceConfig.class, mConfig)
+                    .build();
+            return getApiServiceHttpClient(cache).newCall(taggedRequest);
+        }
     }
-}
\ No newline at end of file
+}
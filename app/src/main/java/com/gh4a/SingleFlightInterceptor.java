@@ -0,0 +1,112 @@
+package com.gh4a;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.HashMap;
+import java.util.concurrent.CountDownLatch;
+
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
+/**
+ * Coalesces identical GET requests that are in flight at the same time: only the first one
+ * is actually executed, the others wait for it and receive a copy of its response.
+ * Requests are considered identical if method, URL and the headers influencing the
+ * response (authorization, accepted content type and cache control) match.
+ */
+class SingleFlightInterceptor implements Interceptor {
+    // Responses larger than that aren't shared, but loaded by every caller on its own,
+    // as we need to keep a copy of them in memory for sharing
+    private static final long MAX_SHARED_BODY_SIZE = 2 * 1024 * 1024;
+
+    private final HashMap<String, InFlightCall> mInFlightCalls = new HashMap<>();
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Request request = chain.request();
+        if (!"GET".equals(request.method())) {
+            return chain.proceed(request);
+        }
+
+        String key = makeKey(request);
+        final InFlightCall call;
+        final boolean isLeader;
+        synchronized (mInFlightCalls) {
+            InFlightCall existingCall = mInFlightCalls.get(key);
+            isLeader = existingCall == null;
+            call = isLeader ? new InFlightCall() : existingCall;
+            if (isLeader) {
+                mInFlightCalls.put(key, call);
+            } else {
+                call.mWaiterCount++;
+            }
+        }
+
+        if (!isLeader) {
+            Response sharedResponse = call.awaitResponseFor(request);
+            // Fall back to doing the request ourselves if the shared one failed
+            return sharedResponse != null ? sharedResponse : chain.proceed(request);
+        }
+
+        Response response = null;
+        try {
+            response = chain.proceed(request);
+            return response;
+        } finally {
+            final boolean hasWaiters;
+            synchronized (mInFlightCalls) {
+                mInFlightCalls.remove(key);
+                hasWaiters = call.mWaiterCount > 0;
+            }
+            call.complete(hasWaiters ? response : null);
+        }
+    }
+
+    private static String makeKey(Request request) {
+        return request.method() + " " + request.url()
+                + "|" + request.header("Authorization")
+                + "|" + request.header("Accept")
+                + "|" + request.header("Cache-Control");
+    }
+
+    private static class InFlightCall {
+        private final CountDownLatch mLatch = new CountDownLatch(1);
+        // Guarded by the lock of mInFlightCalls
+        private int mWaiterCount;
+        private Response mResponse;
+        private byte[] mBody;
+
+        void complete(Response response) {
+            if (response != null && response.body() != null) {
+                try {
+                    // Peeking doesn't consume the body, so the leader can still read it
+                    ResponseBody peekedBody = response.peekBody(MAX_SHARED_BODY_SIZE + 1);
+                    if (peekedBody.contentLength() <= MAX_SHARED_BODY_SIZE) {
+                        mBody = peekedBody.bytes();
+                        mResponse = response;
+                    }
+                } catch (IOException e) {
+                    // Let the waiting callers do their requests themselves
+                }
+            }
+            mLatch.countDown();
+        }
+
+        Response awaitResponseFor(Request request) throws IOException {
+            try {
+                mLatch.await();
+            } catch (InterruptedException e) {
+                throw new InterruptedIOException();
+            }
+            if (mResponse == null) {
+                return null;
+            }
+            return mResponse.newBuilder()
+                    .request(request)
+                    .body(ResponseBody.create(mResponse.body().contentType(), mBody))
+                    .build();
+        }
+    }
+}
@@ -18,12 +18,14 @@ package com.gh4a.activities;
 import android.content.Context;
 import android.content.Intent;
 import android.net.Uri;
+import android.text.TextUtils;
 
 import com.gh4a.ServiceFactory;
 import com.gh4a.utils.ApiHelpers;
 import com.gh4a.utils.IntentUtils;
 import com.gh4a.utils.RxUtils;
 import com.gh4a.widget.ReactionBar;
+import com.meisolsson.githubsdk.model.Commit;
 import com.meisolsson.githubsdk.model.PositionalCommentBase;
 import com.meisolsson.githubsdk.model.Reaction;
 import com.meisolsson.githubsdk.model.Reactions;
@@ -31,6 +33,7 @@ import com.meisolsson.githubsdk.model.git.GitComment;
 import com.meisolsson.githubsdk.model.request.ReactionRequest;
 import com.meisolsson.githubsdk.service.reactions.ReactionService;
 import com.meisolsson.githubsdk.service.repositories.RepositoryCommentService;
+import com.meisolsson.githubsdk.service.repositories.RepositoryCommitService;
 
 import java.util.List;
 
@@ -102,6 +105,18 @@ public class CommitDiffViewerActivity extends DiffViewerActivity<GitComment> {
                 .compose(RxUtils.filter(c -> c.position() != null));
     }
 
+    @Override
+    protected Single<String> getDiffSingle(boolean bypassCache) {
+        final RepositoryCommitService service =
+                ServiceFactory.get(RepositoryCommitService.class, bypassCache);
+        return service.getCommit(mRepoOwner, mRepoName, mSha)
+                .map(ApiHelpers::throwOnFailure)
+                .map(Commit::files)
+                .compose(RxUtils.filterAndMapToFirst(f -> TextUtils.equals(f.filename(), mPath)))
+                .map(file -> file.isPresent() && file.get().patch() != null
+                        ? file.get().patch() : "");
+    }
+
     @Override
     public Single<List<Reaction>> loadReactionDetails(ReactionBar.Item item, boolean bypassCache) {
         final CommentWrapper comment = (CommentWrapper) item;
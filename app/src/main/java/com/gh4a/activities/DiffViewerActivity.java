@@ -25,23 +25,37 @@ import androidx.activity.result.contract.ActivityResultContracts;
 import androidx.annotation.Nullable;
 import androidx.collection.LongSparseArray;
 import androidx.appcompat.widget.PopupMenu;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
 import android.text.TextUtils;
+import android.util.Pair;
 import android.util.SparseArray;
+import android.util.TypedValue;
 import android.view.Menu;
 import android.view.MenuInflater;
 import android.view.MenuItem;
+import android.view.MotionEvent;
 import android.view.View;
+import android.view.ViewGroup;
+import android.webkit.WebView;
+import android.widget.HorizontalScrollView;
 
 import com.gh4a.Gh4Application;
 import com.gh4a.R;
+import com.gh4a.adapter.DiffLineAdapter;
 import com.gh4a.fragment.ConfirmationDialogFragment;
+import com.gh4a.model.ParsedDiff;
 import com.gh4a.utils.ActivityResultHelpers;
 import com.gh4a.utils.ApiHelpers;
 import com.gh4a.utils.FileUtils;
+import com.gh4a.utils.HandoffStore;
 import com.gh4a.utils.HtmlUtils;
+import com.gh4a.utils.HttpImageGetter;
 import com.gh4a.utils.IntentUtils;
 import com.gh4a.utils.RxUtils;
 import com.gh4a.utils.StringUtils;
+import com.gh4a.utils.UiUtils;
+import com.gh4a.widget.FindActionModeCallback;
 import com.gh4a.widget.ReactionBar;
 import com.meisolsson.githubsdk.model.PositionalCommentBase;
 import com.meisolsson.githubsdk.model.Reactions;
@@ -54,7 +68,7 @@ import io.reactivex.Single;
 import retrofit2.Response;
 
 public abstract class DiffViewerActivity<C extends PositionalCommentBase> extends WebViewerActivity
-        implements ReactionBar.Callback, ReactionBar.ReactionDetailsCache.Listener,
+        implements DiffLineAdapter.Callback, ReactionBar.ReactionDetailsCache.Listener,
         ConfirmationDialogFragment.Callback {
     protected static <C extends PositionalCommentBase> Intent fillInIntent(Intent baseIntent,
             String repoOwner, String repoName, String commitSha, String path, String diff,
@@ -64,17 +78,23 @@ public abstract class DiffViewerActivity<C extends PositionalCommentBase> extend
                 .putExtra("repo", repoName)
                 .putExtra("sha", commitSha)
                 .putExtra("path", path)
-                .putExtra("diff", diff)
                 .putExtra("initial_line", initialLine)
                 .putExtra("highlight_start", highlightStartLine)
                 .putExtra("highlight_end", highlightEndLine)
                 .putExtra("highlight_right", highlightisRight)
                 .putExtra("initial_comment", initialComment);
+
+        // Diffs and comment lists can be huge, so hand them over in-process instead of
+        // marshalling them into the extras. They're re-fetched if the process was killed.
+        String key = HandoffStore.makeKey(baseIntent.getComponent().getClassName(),
+                repoOwner, repoName, baseIntent.getIntExtra("number", -1), commitSha, path);
+        String diffKey = key + "#diff";
+        HandoffStore.put(diffKey, diff != null ? diff : "");
+        intent.putExtra("diff_key", diffKey);
         if (comments != null) {
-            // When there are lots of comments containing a huge amount of text, the extras bundle may
-            // become too large, causing a TransactionTooLargeException when launching the activity.
-            // In order to avoid this problem, we store the data in compressed form
-            IntentUtils.putCompressedArrayListExtra(intent, "comments", new ArrayList<>(comments), 500_000);
+            String commentsKey = key + "#comments";
+            HandoffStore.put(commentsKey, new ArrayList<>(comments));
+            intent.putExtra("comments_key", commentsKey);
         }
         return intent;
     }
@@ -152,6 +172,7 @@ public abstract class DiffViewerActivity<C extends PositionalCommentBase> extend
     );
 
     private static final int ID_LOADER_COMMENTS = 0;
+    private static final int ID_LOADER_DIFF = 1;
 
     protected String mRepoOwner;
     protected String mRepoName;
@@ -177,11 +198,23 @@ public abstract class DiffViewerActivity<C extends PositionalCommentBase> extend
     }
 
     private String mDiff;
-    private String[] mDiffLines;
+    private ParsedDiff mParsedDiff;
+    // Keys of the handoff store entries we hold, or null if we don't hold them
+    private String mDiffKey;
+    private String mCommentsKey;
+    private List<C> mHandoffComments;
     private final SparseArray<List<PositionalCommentBase>> mCommentsByPosition = new SparseArray<>();
     private final LongSparseArray<CommentWrapper> mWrappedComments = new LongSparseArray<>();
 
+    private HorizontalScrollView mScrollContainer;
+    private RecyclerView mDiffList;
+    private DiffLineAdapter mAdapter;
+    private HttpImageGetter mImageGetter;
+    private boolean mInitialPositionApplied;
+    private boolean mWrapLines;
+
     private static final int MENU_ITEM_VIEW = 10;
+    private static final float DIFF_TEXT_SIZE_DP = 12;
 
     @Override
     public void onCreate(Bundle savedInstanceState) {
@@ -190,6 +223,56 @@ public abstract class DiffViewerActivity<C extends PositionalCommentBase> extend
         loadComments(true, false);
     }
 
+    @Override
+    protected View onCreateNativeContentView(ViewGroup container) {
+        View view = getLayoutInflater().inflate(R.layout.diff_viewer, container, false);
+        mScrollContainer = view.findViewById(R.id.diff_scroll_container);
+        mDiffList = view.findViewById(R.id.diff_list);
+        mScrollContainer.addOnLayoutChangeListener((v, left, top, right, bottom,
+                oldLeft, oldTop, oldRight, oldBottom) -> {
+            if (mWrapLines && right - left != oldRight - oldLeft) {
+                // Changing the layout params requests a layout, so don't do that while in one
+                mDiffList.post(this::updateDiffListWidth);
+            }
+        });
+        mImageGetter = new HttpImageGetter(this);
+
+        float textSize = TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_DIP,
+                DIFF_TEXT_SIZE_DP, getResources().getDisplayMetrics()) * getTextZoom() / 100F;
+        mAdapter = new DiffLineAdapter(this, mImageGetter, mReactionDetailsCache, textSize, this);
+        mDiffList.setLayoutManager(new LinearLayoutManager(this));
+        mDiffList.setAdapter(mAdapter);
+        mDiffList.addOnItemTouchListener(new RecyclerView.SimpleOnItemTouchListener() {
+            @Override
+            public boolean onInterceptTouchEvent(RecyclerView rv, MotionEvent event) {
+                if (event.getAction() == MotionEvent.ACTION_DOWN) {
+                    // The popup anchor doesn't scroll horizontally with the list
+                    mLastTouchDown.set((int) event.getX() - mScrollContainer.getScrollX(),
+                            (int) event.getY());
+                }
+                return false;
+            }
+        });
+        return view;
+    }
+
+    @Override
+    protected void onResume() {
+        super.onResume();
+        mImageGetter.resume();
+    }
+
+    @Override
+    protected void onPause() {
+        super.onPause();
+        mImageGetter.pause();
+    }
+
+    @Override
+    public boolean canChildScrollUp() {
+        return UiUtils.canViewScrollUp(mDiffList);
+    }
+
     @Nullable
     @Override
     protected String getActionBarTitle() {
@@ -205,6 +288,11 @@ public abstract class DiffViewerActivity<C extends PositionalCommentBase> extend
     @Override
     protected void onDestroy() {
         mReactionDetailsCache.destroy();
+        mImageGetter.destroy();
+        if (mDiffKey != null) {
+            HandoffStore.release(mDiffKey);
+        }
+        releaseHandoffComments();
         super.onDestroy();
     }
 
@@ -215,7 +303,12 @@ public abstract class DiffViewerActivity<C extends PositionalCommentBase> extend
         mRepoName = extras.getString("repo");
         mPath = extras.getString("path");
         mSha = extras.getString("sha");
-        mDiff = extras.getString("diff");
+        String diffKey = extras.getString("diff_key");
+        mDiff = HandoffStore.acquire(diffKey);
+        mDiffKey = mDiff != null ? diffKey : null;
+        String commentsKey = extras.getString("comments_key");
+        mHandoffComments = HandoffStore.acquire(commentsKey);
+        mCommentsKey = mHandoffComments != null ? commentsKey : null;
         mInitialLine = extras.getInt("initial_line", -1);
         mHighlightStartLine = extras.getInt("highlight_start", -1);
         mHighlightEndLine = extras.getInt("highlight_end", -1);
@@ -226,12 +319,13 @@ public abstract class DiffViewerActivity<C extends PositionalCommentBase> extend
 
     @Override
     protected boolean canSwipeToRefresh() {
-        // no need for pull-to-refresh if everything was passed in the intent extras
-        return !IntentUtils.hasCompressedExtra(getIntent(), "comments");
+        // no need for pull-to-refresh if everything was handed over by the caller
+        return mCommentsKey == null;
     }
 
     @Override
     public void onRefresh() {
+        mImageGetter.clearHtmlCache();
         setContentShown(false);
         loadComments(true, true);
         super.onRefresh();
@@ -272,6 +366,113 @@ public abstract class DiffViewerActivity<C extends PositionalCommentBase> extend
         }
     }
 
+    @Override
+    protected void onDataReady() {
+        if (mParsedDiff == null) {
+            mParsedDiff = new ParsedDiff(mDiff);
+        }
+
+        mWrappedComments.clear();
+        for (int i = 0; i < mCommentsByPosition.size(); i++) {
+            for (PositionalCommentBase comment : mCommentsByPosition.valueAt(i)) {
+                mWrappedComments.put(comment.id(), new CommentWrapper(comment));
+            }
+        }
+
+        int highlightStartLine = mParsedDiff.findLine(mHighlightStartLine, mHighlightIsRight);
+        int highlightEndLine = mParsedDiff.findLine(mHighlightEndLine, mHighlightIsRight);
+        if (highlightStartLine == -1 || highlightEndLine == -1) {
+            highlightStartLine = -1;
+            highlightEndLine = -1;
+        }
+
+        mAdapter.setData(mParsedDiff, mCommentsByPosition,
+                highlightStartLine, highlightEndLine, mInitialComment);
+
+        if (!mInitialPositionApplied) {
+            int position = -1;
+            if (mInitialLine > 0) {
+                position = mAdapter.getPositionForLine(mInitialLine);
+            } else if (mInitialComment != null) {
+                position = mAdapter.getPositionForComment(mInitialComment);
+            } else if (highlightStartLine != -1) {
+                position = mAdapter.getPositionForLine(highlightStartLine);
+            }
+            if (position >= 0) {
+                final int scrollPosition = position;
+                mDiffList.post(() -> {
+                    LinearLayoutManager lm = (LinearLayoutManager) mDiffList.getLayoutManager();
+                    lm.scrollToPositionWithOffset(scrollPosition, mDiffList.getHeight() / 3);
+                });
+            }
+            mInitialPositionApplied = true;
+        }
+
+        onNativeDataReady();
+    }
+
+    @Override
+    protected void applyNativeLineWrapping(boolean enabled) {
+        mWrapLines = enabled;
+        updateDiffListWidth();
+        // Keep comments readable by not letting them grow beyond the screen
+        mAdapter.setCommentWidth(enabled
+                ? ViewGroup.LayoutParams.MATCH_PARENT
+                : getResources().getDisplayMetrics().widthPixels);
+    }
+
+    @Override
+    protected FindActionModeCallback.Finder onCreateNativeFinder() {
+        return new DiffLineFinder();
+    }
+
+    private void updateDiffListWidth() {
+        final int width;
+        if (!mWrapLines) {
+            width = mAdapter.getUnwrappedWidth();
+        } else if (mScrollContainer.getWidth() > 0) {
+            // The scroll container measures its child without width limit, so lines would
+            // never wrap with MATCH_PARENT; pin the list to the visible width instead
+            width = mScrollContainer.getWidth() - mScrollContainer.getPaddingLeft()
+                    - mScrollContainer.getPaddingRight();
+        } else {
+            // Not laid out yet, the layout change listener will fix up the width
+            width = ViewGroup.LayoutParams.MATCH_PARENT;
+        }
+        ViewGroup.LayoutParams lp = mDiffList.getLayoutParams();
+        if (lp.width != width) {
+            lp.width = width;
+            mDiffList.setLayoutParams(lp);
+        }
+    }
+
+    @Override
+    public void onLineClick(int line) {
+        if (!Gh4Application.get().isAuthorized()) {
+            return;
+        }
+        String uri = String.format(Locale.US, COMMENT_ADD_URI_FORMAT, line,
+                mParsedDiff.getLeftLine(line), mParsedDiff.getRightLine(line),
+                mParsedDiff.getLineType(line) == ParsedDiff.TYPE_ADDED);
+        handleUrlLoad(Uri.parse(uri));
+    }
+
+    @Override
+    public void onCommentClick(int line, PositionalCommentBase comment) {
+        if (!Gh4Application.get().isAuthorized()) {
+            return;
+        }
+        String uri = String.format(Locale.US, COMMENT_EDIT_URI_FORMAT, line,
+                mParsedDiff.getLeftLine(line), mParsedDiff.getRightLine(line),
+                mParsedDiff.getLineType(line) == ParsedDiff.TYPE_ADDED, comment.id());
+        handleUrlLoad(Uri.parse(uri));
+    }
+
+    @Override
+    public ReactionBar.Item getReactionItem(PositionalCommentBase comment) {
+        return mWrappedComments.get(comment.id());
+    }
+
     @Override
     protected String generateHtml(String cssTheme, boolean addTitleHeader) {
         StringBuilder content = new StringBuilder();
@@ -294,13 +495,13 @@ public abstract class DiffViewerActivity<C extends PositionalCommentBase> extend
         }
         content.append("<pre>");
 
-        mDiffLines = mDiff != null ? mDiff.split("\n") : new String[0];
+        String[] diffLines = mDiff != null ? mDiff.split("\n") : new String[0];
 
         int highlightStartLine = -1, highlightEndLine = -1;
         int leftDiffPosition = -1, rightDiffPosition = -1;
 
-        for (int i = 0; i < mDiffLines.length; i++) {
-            String line = mDiffLines[i];
+        for (int i = 0; i < diffLines.length; i++) {
+            String line = diffLines[i];
             String cssClass = null;
             if (line.startsWith("@@")) {
                 int[] lineNumbers = StringUtils.extractDiffHunkLineNumbers(line);
@@ -344,7 +545,6 @@ public abstract class DiffViewerActivity<C extends PositionalCommentBase> extend
             if (comments != null) {
                 for (PositionalCommentBase comment : comments) {
                     long id = comment.id();
-                    mWrappedComments.put(id, new CommentWrapper(comment));
                     content.append("<div ").append("id=\"comment").append(id).append("\"");
                     content.append(" class=\"comment");
                     if (mInitialComment != null && mInitialComment.matches(id, null)) {
@@ -465,7 +665,7 @@ public abstract class DiffViewerActivity<C extends PositionalCommentBase> extend
         int leftLine = Integer.parseInt(uri.getQueryParameter("l"));
         int rightLine = Integer.parseInt(uri.getQueryParameter("r"));
         boolean isRightLine = Boolean.parseBoolean(uri.getQueryParameter("isRightLine"));
-        String lineText = mDiffLines[line];
+        String lineText = mParsedDiff.getLine(line);
         String idParam = uri.getQueryParameter("id");
         long id = idParam != null ? Long.parseLong(idParam) : 0L;
 
@@ -481,17 +681,29 @@ public abstract class DiffViewerActivity<C extends PositionalCommentBase> extend
 
     private void refresh() {
         // Make sure we load the comments from remote, as we now know they've changed
-        IntentUtils.removeCompressedExtra(getIntent(), "comments");
+        releaseHandoffComments();
+        getIntent().removeExtra("comments_key");
 
         // Make sure our callers are aware of the change
         setResult(RESULT_OK);
 
-        mWrappedComments.clear();
+        mImageGetter.clearHtmlCache();
         loadComments(false, true);
         setContentShown(false);
     }
 
+    /**
+     * Drops the line to scroll to and the lines to highlight passed by the caller. For
+     * subclasses that had to re-fetch a diff different from the one those lines refer to.
+     */
+    protected void clearInitialLines() {
+        mInitialLine = -1;
+        mHighlightStartLine = -1;
+        mHighlightEndLine = -1;
+    }
+
     protected abstract Single<List<C>> getCommentsSingle(boolean bypassCache);
+    protected abstract Single<String> getDiffSingle(boolean bypassCache);
     protected abstract void openCommentDialog(long id, long replyToId, String line,
             int position, int leftLine, int rightLine, PositionalCommentBase commitComment);
     protected abstract Single<Response<Void>> deleteCommentSingle(long id);
@@ -513,17 +725,30 @@ public abstract class DiffViewerActivity<C extends PositionalCommentBase> extend
                         error -> handleActionFailure("Comment deletion failed", error));
     }
 
-    private void loadComments(boolean useIntentExtraIfPresent, boolean force) {
-        List<C> intentComments = useIntentExtraIfPresent
-                ? IntentUtils.getCompressedArrayListExtra(getIntent(), "comments") : null;
-        Single<List<C>> commentsSingle = intentComments != null
-                ? Single.just(intentComments)
-                : getCommentsSingle(force).compose(makeLoaderSingle(ID_LOADER_COMMENTS, force));
+    private void releaseHandoffComments() {
+        if (mCommentsKey != null) {
+            HandoffStore.release(mCommentsKey);
+            mCommentsKey = null;
+        }
+        mHandoffComments = null;
+    }
 
-        commentsSingle.subscribe(result -> {
-            addCommentsToMap(result);
-            onDataReady();
-        }, this::handleLoadFailure);
+    private void loadComments(boolean useHandoffDataIfPresent, boolean force) {
+        List<C> handoffComments = useHandoffDataIfPresent ? mHandoffComments : null;
+        Single<List<C>> commentsSingle = handoffComments != null
+                ? Single.just(handoffComments)
+                : getCommentsSingle(force).compose(makeLoaderSingle(ID_LOADER_COMMENTS, force));
+        // The diff is only missing if the handoff data was lost, e.g. due to process death
+        Single<String> diffSingle = mDiff != null
+                ? Single.just(mDiff)
+                : getDiffSingle(force).compose(makeLoaderSingle(ID_LOADER_DIFF, force));
+
+        Single.zip(diffSingle, commentsSingle, Pair::create)
+                .subscribe(result -> {
+                    mDiff = result.first;
+                    addCommentsToMap(result.second);
+                    onDataReady();
+                }, this::handleLoadFailure);
     }
 
     private class CommentActionPopup extends PopupMenu implements
@@ -615,4 +840,64 @@ public abstract class DiffViewerActivity<C extends PositionalCommentBase> extend
             return true;
         }
     }
+
+    // Searches the lines of the diff, so a line only counts as one match
+    private class DiffLineFinder implements FindActionModeCallback.Finder {
+        private final List<Integer> mMatchingLines = new ArrayList<>();
+        private WebView.FindListener mListener;
+        private int mActiveMatch;
+
+        @Override
+        public void setFindListener(WebView.FindListener listener) {
+            mListener = listener;
+        }
+
+        @Override
+        public void findAllAsync(String find) {
+            mMatchingLines.clear();
+            mActiveMatch = 0;
+            int lineCount = mParsedDiff != null ? mParsedDiff.getLineCount() : 0;
+            for (int i = 0; i < lineCount; i++) {
+                if (containsIgnoreCase(mParsedDiff.getLine(i), find)) {
+                    mMatchingLines.add(i);
+                }
+            }
+            showActiveMatch();
+        }
+
+        @Override
+        public void findNext(boolean forward) {
+            int count = mMatchingLines.size();
+            if (count == 0) {
+                return;
+            }
+            mActiveMatch = (mActiveMatch + (forward ? 1 : count - 1)) % count;
+            showActiveMatch();
+        }
+
+        @Override
+        public void clearMatches() {
+            mMatchingLines.clear();
+        }
+
+        private void showActiveMatch() {
+            if (!mMatchingLines.isEmpty()) {
+                int position = mAdapter.getPositionForLine(mMatchingLines.get(mActiveMatch));
+                LinearLayoutManager lm = (LinearLayoutManager) mDiffList.getLayoutManager();
+                lm.scrollToPositionWithOffset(position, mDiffList.getHeight() / 3);
+            }
+            if (mListener != null) {
+                mListener.onFindResultReceived(mActiveMatch, mMatchingLines.size(), true);
+            }
+        }
+
+        private boolean containsIgnoreCase(String line, String find) {
+            for (int i = 0, last = line.length() - find.length(); i <= last; i++) {
+                if (line.regionMatches(true, i, find, 0, find.length())) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
 }
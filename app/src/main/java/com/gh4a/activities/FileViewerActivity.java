@@ -18,8 +18,6 @@ package com.gh4a.activities;
 import android.content.ActivityNotFoundException;
 import android.content.Context;
 import android.content.Intent;
-import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
 import android.net.Uri;
 import android.os.Bundle;
 import androidx.annotation.Nullable;
@@ -27,16 +25,17 @@ import androidx.annotation.StringRes;
 import androidx.print.PrintHelper;
 import androidx.appcompat.widget.PopupMenu;
 import android.text.TextUtils;
-import android.util.Base64;
 import android.view.Menu;
 import android.view.MenuInflater;
 import android.view.MenuItem;
 import android.view.View;
+import android.webkit.WebResourceResponse;
 
 import com.gh4a.ApiRequestException;
 import com.gh4a.R;
 import com.gh4a.ServiceFactory;
 import com.gh4a.utils.ApiHelpers;
+import com.gh4a.utils.BlobCache;
 import com.gh4a.utils.DownloadUtils;
 import com.gh4a.utils.FileUtils;
 import com.gh4a.utils.HtmlUtils;
@@ -48,6 +47,9 @@ import com.meisolsson.githubsdk.model.Content;
 import com.meisolsson.githubsdk.model.TextMatch;
 import com.meisolsson.githubsdk.service.repositories.RepositoryContentService;
 
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
 import java.util.List;
 
 import io.reactivex.Single;
@@ -90,11 +92,15 @@ public class FileViewerActivity extends WebViewerActivity
     private int mHighlightEnd;
     private TextMatch mTextMatch;
     private Content mContent;
+    // Images are kept in a file instead, accessed from the WebView's background thread
+    private volatile File mImageFile;
     private int mLastTouchedLine = 0;
     private boolean mViewRawText;
 
     private static final int ID_LOADER_FILE = 0;
     private static final int MENU_ITEM_HISTORY = 10;
+    // Not an actual asset, requests for it are served from mImageFile
+    private static final String IMAGE_URL = "file:///android_asset/blob";
 
     @Override
     public void onCreate(Bundle savedInstanceState) {
@@ -103,6 +109,8 @@ public class FileViewerActivity extends WebViewerActivity
         String filename = FileUtils.getFileName(mPath);
         if (FileUtils.isBinaryFormat(filename) && !FileUtils.isImage(filename)) {
             openUnsuitableFileAndFinish();
+        } else if (FileUtils.isImage(filename)) {
+            loadImage(false);
         } else {
             loadFile(false);
         }
@@ -140,19 +148,24 @@ public class FileViewerActivity extends WebViewerActivity
     @Override
     public void onRefresh() {
         setContentShown(false);
-        loadFile(true);
+        if (FileUtils.isImage(mPath)) {
+            loadImage(true);
+        } else {
+            loadFile(true);
+        }
         super.onRefresh();
     }
 
     @Override
     protected String generateHtml(String cssTheme, boolean addTitleHeader) {
-        String base64Data = mContent.content();
-        if (base64Data != null && FileUtils.isImage(mPath)) {
+        if (FileUtils.isImage(mPath)) {
             String title = addTitleHeader ? getDocumentTitle() : null;
-            String imageUrl = "data:" + FileUtils.getMimeTypeFor(mPath) +
-                    ";base64," + base64Data;
+            // Make sure the WebView doesn't reuse the image it had before a refresh
+            String imageUrl = IMAGE_URL + "?v=" + mImageFile.lastModified();
             return highlightImage(imageUrl, cssTheme, title);
-        } else if (base64Data != null && FileUtils.isMarkdown(mPath) && !mViewRawText) {
+        }
+        String base64Data = mContent.content();
+        if (base64Data != null && FileUtils.isMarkdown(mPath) && !mViewRawText) {
             String folderPath = FileUtils.getFolderPath(mPath);
             return generateMarkdownHtml(base64Data,
                     mRepoOwner, mRepoName, mRef, folderPath, cssTheme, addTitleHeader);
@@ -164,6 +177,21 @@ public class FileViewerActivity extends WebViewerActivity
         }
     }
 
+    @Override
+    protected WebResourceResponse interceptRequest(Uri uri) {
+        File imageFile = mImageFile;
+        if (imageFile == null
+                || !IMAGE_URL.equals(uri.buildUpon().clearQuery().build().toString())) {
+            return null;
+        }
+        try {
+            return new WebResourceResponse(FileUtils.getMimeTypeFor(mPath), null,
+                    new FileInputStream(imageFile));
+        } catch (FileNotFoundException e) {
+            return null;
+        }
+    }
+
     private void findMatchingLines(String data) {
         if (mTextMatch == null) {
             return;
@@ -185,19 +213,18 @@ public class FileViewerActivity extends WebViewerActivity
 
     @Override
     protected boolean handlePrintRequest() {
-        if (!FileUtils.isImage(mPath)) {
+        // Vector images can't be decoded into a bitmap, let the WebView print them
+        if (!FileUtils.isImage(mPath) || !FileUtils.isBinaryFormat(mPath) || mImageFile == null) {
             return false;
         }
-        String base64Data = mContent != null ? mContent.content() : null;
-        if (base64Data == null) {
-            return false;
-        }
-        byte[] decodedData = Base64.decode(base64Data, Base64.DEFAULT);
-        Bitmap bitmap = BitmapFactory.decodeByteArray(decodedData, 0, decodedData.length);
-
         PrintHelper printHelper = new PrintHelper(this);
         printHelper.setScaleMode(PrintHelper.SCALE_MODE_FIT);
-        printHelper.printBitmap(getDocumentTitle(), bitmap);
+        try {
+            // Decodes the file sampled down to the page size
+            printHelper.printBitmap(getDocumentTitle(), Uri.fromFile(mImageFile));
+        } catch (FileNotFoundException e) {
+            return false;
+        }
         return true;
     }
 
@@ -237,8 +264,13 @@ public class FileViewerActivity extends WebViewerActivity
                 IntentUtils.launchBrowser(this, url);
                 return true;
             case R.id.download:
-                DownloadUtils.enqueueDownloadWithPermissionCheck(this, buildRawFileUrl(),
-                        FileUtils.getMimeTypeFor(mPath), FileUtils.getFileName(mPath), null);
+                if (mImageFile != null) {
+                    DownloadUtils.saveFileWithPermissionCheck(this, mImageFile,
+                            FileUtils.getMimeTypeFor(mPath), FileUtils.getFileName(mPath));
+                } else {
+                    DownloadUtils.enqueueDownloadWithPermissionCheck(this, buildRawFileUrl(),
+                            FileUtils.getMimeTypeFor(mPath), FileUtils.getFileName(mPath), null);
+                }
                 return true;
             case R.id.share:
                 IntentUtils.share(this, getString(R.string.share_file_subject,
@@ -339,6 +371,18 @@ public class FileViewerActivity extends WebViewerActivity
         return content.toString();
     }
 
+    private void loadImage(boolean force) {
+        // Streamed into a file instead of fetched as base64 via the contents API, so large
+        // images are never held in memory by us; the WebView reads them from that file
+        Single.fromCallable(() -> BlobCache.fetch(this, mRepoOwner, mRepoName, mRef, mPath, force))
+                .compose(makeLoaderSingle(ID_LOADER_FILE, force))
+                .subscribe(file -> {
+                    mImageFile = file;
+                    onDataReady();
+                    setContentEmpty(false);
+                }, this::handleLoadFailure);
+    }
+
     private void loadFile(boolean force) {
         RepositoryContentService service = ServiceFactory.get(RepositoryContentService.class, force);
         service.getContents(mRepoOwner, mRepoName, mPath, mRef)
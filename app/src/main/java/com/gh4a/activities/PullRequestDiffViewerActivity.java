@@ -19,6 +19,7 @@ import android.content.Context;
 import android.content.Intent;
 import android.net.Uri;
 import android.os.Bundle;
+import android.text.TextUtils;
 
 import com.gh4a.ServiceFactory;
 import com.gh4a.utils.ApiHelpers;
@@ -32,6 +33,7 @@ import com.meisolsson.githubsdk.model.ReviewComment;
 import com.meisolsson.githubsdk.model.request.ReactionRequest;
 import com.meisolsson.githubsdk.service.reactions.ReactionService;
 import com.meisolsson.githubsdk.service.pull_request.PullRequestReviewCommentService;
+import com.meisolsson.githubsdk.service.pull_request.PullRequestService;
 
 import java.util.List;
 
@@ -78,6 +80,32 @@ public class PullRequestDiffViewerActivity extends DiffViewerActivity<ReviewComm
                 .compose(RxUtils.filter(c -> c.position() != null));
     }
 
+    @Override
+    protected Single<String> getDiffSingle(boolean bypassCache) {
+        final PullRequestService service =
+                ServiceFactory.get(PullRequestService.class, bypassCache);
+        Single<String> headShaSingle = service
+                .getPullRequest(mRepoOwner, mRepoName, mPullRequestNumber)
+                .map(ApiHelpers::throwOnFailure)
+                .map(pr -> pr.head().sha());
+        Single<String> patchSingle = ApiHelpers.PageIterator
+                .first(page -> service.getPullRequestFiles(
+                        mRepoOwner, mRepoName, mPullRequestNumber, page),
+                        f -> TextUtils.equals(f.filename(), mPath))
+                .map(file -> file.isPresent() && file.get().patch() != null
+                        ? file.get().patch() : "");
+        return Single.zip(headShaSingle, patchSingle, (headSha, patch) -> {
+            // The file list only has the patch for the current head. The lines we were
+            // asked to show may refer to an older commit (e.g. the one a review comment
+            // was made on), so don't point at unrelated lines in that case. Comments are
+            // still fine, as their positions are relative to the current diff.
+            if (!TextUtils.equals(headSha, mSha)) {
+                clearInitialLines();
+            }
+            return patch;
+        });
+    }
+
     @Override
     protected Uri createUrl(String lineId, long replyId) {
         Uri.Builder builder = IntentUtils.createBaseUriForRepo(mRepoOwner, mRepoName)
@@ -16,7 +16,6 @@ import com.gh4a.ServiceFactory;
 import com.gh4a.db.BookmarksProvider;
 import com.gh4a.fragment.PublicEventListFragment;
 import com.gh4a.fragment.UserFragment;
-import com.gh4a.utils.ApiHelpers;
 import com.gh4a.utils.IntentUtils;
 import com.gh4a.utils.StringUtils;
 import com.meisolsson.githubsdk.model.User;
@@ -169,10 +168,9 @@ public class UserActivity extends BaseFragmentPagerActivity {
     }
 
     private void loadUser(boolean force) {
-        UserService service = ServiceFactory.get(UserService.class, force);
-        service.getUser(mUserLogin)
-                .map(ApiHelpers::throwOnFailure)
-                .compose(makeLoaderSingle(ID_LOADER_USER, force))
+        ServiceFactory.getWithCachedResult(UserService.class, force,
+                        service -> service.getUser(mUserLogin))
+                .compose(makeLoaderObservable(ID_LOADER_USER, force))
                 .subscribe(result -> {
                     mUser = result;
                     invalidateTabs();
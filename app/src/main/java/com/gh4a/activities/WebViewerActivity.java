@@ -27,33 +27,48 @@ import android.net.Uri;
 import android.os.Build;
 import android.os.Bundle;
 import android.os.Handler;
+import android.os.SystemClock;
 import android.print.PrintAttributes;
 import android.print.PrintDocumentAdapter;
 import android.print.PrintManager;
 import android.text.TextUtils;
+import android.util.Log;
 import android.view.Menu;
 import android.view.MenuItem;
 import android.view.MotionEvent;
 import android.view.View;
+import android.view.ViewGroup;
 import android.webkit.JavascriptInterface;
 import android.webkit.WebResourceRequest;
+import android.webkit.WebResourceResponse;
 import android.webkit.WebSettings;
 import android.webkit.WebView;
 import android.webkit.WebViewClient;
 
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+
 import com.gh4a.BaseActivity;
+import com.gh4a.BuildConfig;
+import com.gh4a.Gh4Application;
 import com.gh4a.R;
 import com.gh4a.fragment.SettingsFragment;
+import com.gh4a.model.CodeBlocks;
 import com.gh4a.utils.FileUtils;
 import com.gh4a.utils.HtmlUtils;
 import com.gh4a.utils.IntentUtils;
 import com.gh4a.utils.StringUtils;
 import com.gh4a.utils.UiUtils;
+import com.gh4a.utils.WebViewPool;
 import com.gh4a.widget.FindActionModeCallback;
 import com.gh4a.widget.SwipeRefreshLayout;
 
 import java.io.IOException;
-import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
 
 @SuppressLint("AddJavascriptInterface")
 public abstract class WebViewerActivity extends BaseActivity implements
@@ -62,19 +77,51 @@ public abstract class WebViewerActivity extends BaseActivity implements
     protected final Point mLastTouchDown = new Point();
 
     private WebView mWebView;
+    private View mNativeContentView;
     private WebView mPrintWebView;
     private boolean mStarted;
     private boolean mHasData;
     private boolean mRequiresNativeClient;
     private boolean mPageFinished;
     private boolean mRenderingDone;
+    private long mRenderingStartTime;
+    // Only set while a file is shown in chunked mode, accessed from the JavaBridge thread
+    private volatile CodeBlocks mCodeBlocks;
+    // Whether blocks far from the viewport are dropped from the document, which find in
+    // page can't search
+    private boolean mCodeBlocksVirtualized;
     private final Handler mHandler = new Handler();
 
     public static final String DARK_CSS_THEME = "dark";
     public static final String LIGHT_CSS_THEME = "light";
     public static final String PRINT_CSS_THEME = "print";
 
-    private static final ArrayList<String> sLanguagePlugins = new ArrayList<>();
+    private static final Set<String> sLanguagePlugins = new HashSet<>();
+    // Language codes handled by plugins whose file name is a different code
+    private static final Map<String, String> LANGUAGE_PLUGIN_ALIASES = new HashMap<>();
+    static {
+        addLanguagePluginAliases("apollo", "agc", "aea");
+        addLanguagePluginAliases("basic", "cbm");
+        addLanguagePluginAliases("erlang", "erl");
+        addLanguagePluginAliases("ex", "exs");
+        addLanguagePluginAliases("kotlin", "kt");
+        addLanguagePluginAliases("lasso", "ls", "lassoscript");
+        addLanguagePluginAliases("lisp", "cl", "el", "lsp", "scm", "ss", "rkt");
+        addLanguagePluginAliases("llvm", "ll");
+        addLanguagePluginAliases("logtalk", "lgt");
+        addLanguagePluginAliases("ml", "fs");
+        addLanguagePluginAliases("n", "nemerle");
+        addLanguagePluginAliases("plain-text", "txt");
+        addLanguagePluginAliases("r", "s", "splus");
+        addLanguagePluginAliases("rust", "rs");
+        addLanguagePluginAliases("tex", "latex");
+        addLanguagePluginAliases("vb", "vbs");
+        addLanguagePluginAliases("vhdl", "vhd");
+        addLanguagePluginAliases("xq", "xquery");
+        addLanguagePluginAliases("yaml", "yml");
+        // Style blocks in HTML are highlighted by the CSS plugin
+        addLanguagePluginAliases("css", "html", "htm", "xhtml");
+    }
     private static final int[] ZOOM_SIZES = { 50, 75, 100, 150, 200 };
 
     private final WebViewClient mWebViewClient = new WebViewClient() {
@@ -100,20 +147,27 @@ public abstract class WebViewerActivity extends BaseActivity implements
             }
             return true;
         }
+
+        @Override
+        public WebResourceResponse shouldInterceptRequest(WebView view, String url) {
+            return interceptRequest(Uri.parse(url));
+        }
     };
 
     @Override
     public void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
 
-        if ((getApplicationInfo().flags & ApplicationInfo.FLAG_DEBUGGABLE) != 0) {
-            WebView.setWebContentsDebuggingEnabled(true);
-        }
-
         setContentView(R.layout.web_viewer);
 
         setContentShown(false);
-        setupWebView();
+        ViewGroup container = findViewById(R.id.viewer_container);
+        mNativeContentView = onCreateNativeContentView(container);
+        if (mNativeContentView != null) {
+            container.addView(mNativeContentView, 0);
+        } else {
+            setupWebView(container);
+        }
         setChildScrollDelegate(this);
     }
 
@@ -122,6 +176,14 @@ public abstract class WebViewerActivity extends BaseActivity implements
         return true;
     }
 
+    @Override
+    protected void onDestroy() {
+        if (mWebView != null) {
+            WebViewPool.release(mWebView);
+        }
+        super.onDestroy();
+    }
+
     @Override
     protected void onStart() {
         super.onStart();
@@ -139,24 +201,34 @@ public abstract class WebViewerActivity extends BaseActivity implements
         return UiUtils.canViewScrollUp(mWebView);
     }
 
-    private void setupWebView() {
-        mWebView = findViewById(R.id.web_view);
+    private void setupWebView(ViewGroup container) {
+        if ((getApplicationInfo().flags & ApplicationInfo.FLAG_DEBUGGABLE) != 0) {
+            WebView.setWebContentsDebuggingEnabled(true);
+        }
+
+        mWebView = WebViewPool.obtain(this);
+        container.addView(mWebView, 0, new ViewGroup.LayoutParams(
+                ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.MATCH_PARENT));
 
         WebSettings s = mWebView.getSettings();
         initWebViewSettings(s);
         addCommonJavascriptInterfaces(mWebView);
-
-        SharedPreferences prefs = getSharedPreferences(SettingsFragment.PREF_NAME, MODE_PRIVATE);
-        int initialZoomLevel = prefs.getInt(SettingsFragment.KEY_TEXT_SIZE, 2);
-        if (initialZoomLevel >= 0 && initialZoomLevel < ZOOM_SIZES.length) {
-            s.setTextZoom(ZOOM_SIZES[initialZoomLevel]);
-        }
+        s.setTextZoom(getTextZoom());
 
         mWebView.setBackgroundColor(Color.TRANSPARENT);
         mWebView.setWebViewClient(mWebViewClient);
         mWebView.setOnTouchListener(this);
     }
 
+    /**
+     * Returns the text zoom in percent chosen by the user.
+     */
+    protected int getTextZoom() {
+        SharedPreferences prefs = getSharedPreferences(SettingsFragment.PREF_NAME, MODE_PRIVATE);
+        int zoomLevel = prefs.getInt(SettingsFragment.KEY_TEXT_SIZE, 2);
+        return zoomLevel >= 0 && zoomLevel < ZOOM_SIZES.length ? ZOOM_SIZES[zoomLevel] : 100;
+    }
+
     @SuppressLint("SetJavaScriptEnabled")
     private void initWebViewSettings(WebSettings s) {
         s.setLayoutAlgorithm(WebSettings.LayoutAlgorithm.NORMAL);
@@ -193,6 +265,10 @@ public abstract class WebViewerActivity extends BaseActivity implements
         if (wrapItem != null) {
             wrapItem.setChecked(shouldWrapLines());
         }
+        MenuItem searchItem = menu.findItem(R.id.search);
+        if (searchItem != null) {
+            searchItem.setVisible(!mCodeBlocksVirtualized);
+        }
         return super.onPrepareOptionsMenu(menu);
     }
 
@@ -226,12 +302,17 @@ public abstract class WebViewerActivity extends BaseActivity implements
     }
 
     private void doSearch() {
-        if (mWebView == null) {
+        FindActionModeCallback.Finder finder = onCreateNativeFinder();
+        if (finder == null && mWebView == null) {
             return;
         }
-        FindActionModeCallback findAction = new FindActionModeCallback(mWebView.getContext());
+        FindActionModeCallback findAction = new FindActionModeCallback(this);
         startSupportActionMode(findAction);
-        findAction.setWebView(mWebView);
+        if (finder != null) {
+            findAction.setFinder(finder);
+        } else {
+            findAction.setWebView(mWebView);
+        }
         findAction.showSoftInput();
     }
 
@@ -253,6 +334,11 @@ public abstract class WebViewerActivity extends BaseActivity implements
                 public void onPageFinished(WebView webView, String url) {
                     doPrintHtml();
                 }
+
+                @Override
+                public WebResourceResponse shouldInterceptRequest(WebView view, String url) {
+                    return interceptRequest(Uri.parse(url));
+                }
             });
         }
         final String html = generateHtml(PRINT_CSS_THEME, true);
@@ -309,7 +395,11 @@ public abstract class WebViewerActivity extends BaseActivity implements
     }
 
     private void applyLineWrapping(boolean enabled) {
-        mWebView.loadUrl("javascript:applyLineWrapping(" + enabled + ")");
+        if (mWebView != null) {
+            mWebView.loadUrl("javascript:applyLineWrapping(" + enabled + ")");
+        } else {
+            applyNativeLineWrapping(enabled);
+        }
     }
 
     protected void handleUrlLoad(Uri uri) {
@@ -319,6 +409,43 @@ public abstract class WebViewerActivity extends BaseActivity implements
     protected void onLineTouched(int line, int x, int y) {
     }
 
+    /**
+     * Lets subclasses serve resources referenced by their document, e.g. from files.
+     * Called on a WebView background thread.
+     */
+    @Nullable
+    protected WebResourceResponse interceptRequest(Uri uri) {
+        return null;
+    }
+
+    /**
+     * Subclasses can show their content natively instead of in a web view by returning the
+     * view to show here. In that case, the web view is only created for printing, and
+     * subclasses call {@link #onNativeDataReady()} instead of {@link #onDataReady()}.
+     */
+    @Nullable
+    protected View onCreateNativeContentView(ViewGroup container) {
+        return null;
+    }
+
+    protected void applyNativeLineWrapping(boolean enabled) {
+    }
+
+    /**
+     * Subclasses showing their content natively return what find in page searches here.
+     */
+    @Nullable
+    protected FindActionModeCallback.Finder onCreateNativeFinder() {
+        return null;
+    }
+
+    protected void onNativeDataReady() {
+        mHasData = true;
+        applyLineWrapping(shouldWrapLines());
+        setContentShown(true);
+        supportInvalidateOptionsMenu();
+    }
+
     protected void onDataReady() {
         final String cssTheme = getResources().getBoolean(R.bool.is_dark_theme)
                 ? DARK_CSS_THEME : LIGHT_CSS_THEME;
@@ -326,11 +453,35 @@ public abstract class WebViewerActivity extends BaseActivity implements
         if (mRequiresNativeClient) {
             mWebView.addJavascriptInterface(new NativeClientJavascriptInterface(), "NativeClient");
         }
+        if (mCodeBlocks != null) {
+            mWebView.addJavascriptInterface(new CodeBlocksJavascriptInterface(), "CodeBlocks");
+        }
+        mRenderingStartTime = SystemClock.elapsedRealtime();
         mWebView.loadDataWithBaseURL("file:///android_asset/", html, null, "utf-8", null);
         mHasData = true;
         supportInvalidateOptionsMenu();
     }
 
+    private static void addLanguagePluginAliases(String plugin, String... languageCodes) {
+        for (String code : languageCodes) {
+            LANGUAGE_PLUGIN_ALIASES.put(code, plugin);
+        }
+    }
+
+    /**
+     * Includes the plugin for the given language, if there is one. Languages prettify
+     * knows by itself don't need a plugin.
+     */
+    private void writeLanguagePluginInclude(StringBuilder content, String languageCode) {
+        loadLanguagePluginListIfNeeded();
+        String code = languageCode.toLowerCase(Locale.US);
+        String alias = LANGUAGE_PLUGIN_ALIASES.get(code);
+        String plugin = "prettify-plugins/lang-" + (alias != null ? alias : code);
+        if (sLanguagePlugins.contains(plugin)) {
+            HtmlUtils.writeScriptInclude(content, plugin);
+        }
+    }
+
     private void loadLanguagePluginListIfNeeded() {
         if (!sLanguagePlugins.isEmpty()) {
             return;
@@ -395,6 +546,19 @@ public abstract class WebViewerActivity extends BaseActivity implements
     protected String generateCodeHtml(String data, String fileName,
                 int highlightStart, int highlightEnd,
                 String cssTheme, boolean addTitleHeader) {
+        // Printing needs the whole document, so only stream files into the screen viewer
+        boolean isPrinting = PRINT_CSS_THEME.equals(cssTheme);
+        int chunkedThreshold = getResources().getInteger(R.integer.code_viewer_chunked_threshold_kb);
+        if (!isPrinting && data.length() >= chunkedThreshold * 1024) {
+            return generateChunkedCodeHtml(data, fileName, highlightStart, highlightEnd,
+                    cssTheme, addTitleHeader);
+        }
+        if (!isPrinting) {
+            mCodeBlocks = null;
+            mCodeBlocksVirtualized = false;
+        }
+
+        String languageCode = prettifyLanguageCodeFor(fileName, data);
         String title = addTitleHeader ? getDocumentTitle() : null;
         StringBuilder content = new StringBuilder();
         content.append("<html><head><title>");
@@ -406,10 +570,7 @@ public abstract class WebViewerActivity extends BaseActivity implements
 
         HtmlUtils.writeCssInclude(content, "prettify", cssTheme);
         HtmlUtils.writeScriptInclude(content, "prettify");
-        loadLanguagePluginListIfNeeded();
-        for (String plugin : sLanguagePlugins) {
-            HtmlUtils.writeScriptInclude(content, plugin);
-        }
+        writeLanguagePluginInclude(content, languageCode);
         content.append("</head>");
         content.append("<body onload='prettyPrint(function() { highlightLines(");
         content.append(highlightStart).append(",").append(highlightEnd).append("); ");
@@ -419,7 +580,7 @@ public abstract class WebViewerActivity extends BaseActivity implements
             content.append("<h2>").append(title).append("</h2>");
         }
         content.append("<pre id='content' class='prettyprint linenums lang-");
-        content.append(prettifyLanguageCodeFor(fileName, data)).append("'>");
+        content.append(languageCode).append("'>");
 
         content.append(TextUtils.htmlEncode(data));
         content.append("</pre></body></html>");
@@ -428,6 +589,57 @@ public abstract class WebViewerActivity extends BaseActivity implements
         return content.toString();
     }
 
+    /**
+     * Generates a document that pulls the file in blocks from the CodeBlocks interface
+     * instead of containing it. Blocks are highlighted once they become visible; past the
+     * plain text threshold, highlighting is skipped and blocks far from the viewport are
+     * dropped from the document.
+     */
+    private String generateChunkedCodeHtml(String data, String fileName,
+            int highlightStart, int highlightEnd, String cssTheme, boolean addTitleHeader) {
+        int plainTextThreshold =
+                getResources().getInteger(R.integer.code_viewer_plain_text_threshold_kb);
+        boolean plainText = data.length() >= plainTextThreshold * 1024;
+        String languageCode = prettifyLanguageCodeFor(fileName, data).replaceAll("[^\\w+#-]", "");
+        boolean highlight = !plainText && !"txt".equals(languageCode);
+
+        mCodeBlocks = new CodeBlocks(data);
+        mCodeBlocksVirtualized = plainText;
+
+        String title = addTitleHeader ? getDocumentTitle() : null;
+        StringBuilder content = new StringBuilder();
+        content.append("<html><head><title>");
+        if (title != null) {
+            content.append(title);
+        }
+        content.append("</title>");
+        HtmlUtils.writeScriptInclude(content, "codeutils");
+        HtmlUtils.writeCssInclude(content, "prettify", cssTheme);
+        if (highlight) {
+            HtmlUtils.writeScriptInclude(content, "prettify");
+            writeLanguagePluginInclude(content, languageCode);
+        }
+        content.append("</head>");
+        content.append("<body onload='loadCodeBlocks(");
+        content.append(mCodeBlocks.getBlockCount()).append(",\"").append(languageCode);
+        content.append("\",").append(highlight).append(",").append(plainText).append(",");
+        content.append(highlightStart).append(",").append(highlightEnd).append(")'");
+        content.append(" onresize='scrollToHighlight();'>");
+        if (title != null) {
+            content.append("<h2>").append(title).append("</h2>");
+        }
+        content.append("<pre id='content' class='prettyprint linenums'></pre>");
+        content.append("</body></html>");
+
+        mRequiresNativeClient = true;
+        return content.toString();
+    }
+
+    @VisibleForTesting
+    CodeBlocks getCodeBlocks() {
+        return mCodeBlocks;
+    }
+
     private String prettifyLanguageCodeFor(String fileName, String fileContent) {
         if (FileUtils.isMarkdown(fileName)) {
             // Markdown files can have HTML code in them, so this is the best compromise we can do
@@ -491,12 +703,30 @@ public abstract class WebViewerActivity extends BaseActivity implements
         @JavascriptInterface
         public void onRenderingDone() {
             mHandler.post(() -> {
+                if (BuildConfig.DEBUG) {
+                    Log.d(Gh4Application.LOG_TAG, "First paint of " + getDocumentTitle() + " after "
+                            + (SystemClock.elapsedRealtime() - mRenderingStartTime) + " ms");
+                }
                 mRenderingDone = true;
                 showContentIfDone();
             });
         }
     }
 
+    private class CodeBlocksJavascriptInterface {
+        @JavascriptInterface
+        public int getFirstLine(int block) {
+            CodeBlocks blocks = mCodeBlocks;
+            return blocks != null ? blocks.getFirstLine(block) : 1;
+        }
+
+        @JavascriptInterface
+        public String getBlock(int block) {
+            CodeBlocks blocks = mCodeBlocks;
+            return blocks != null ? blocks.getBlockHtml(block) : "";
+        }
+    }
+
     private class PrintNativeClientJavascriptInterface {
         @JavascriptInterface
         public void onLineTouched(int line) {
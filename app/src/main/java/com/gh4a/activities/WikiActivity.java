@@ -22,33 +22,51 @@ import androidx.annotation.Nullable;
 
 import com.gh4a.R;
 import com.gh4a.model.Feed;
-import com.gh4a.utils.IntentUtils;
+import com.gh4a.utils.HandoffStore;
 
 public class WikiActivity extends WebViewerActivity {
     public static Intent makeIntent(Context context, String repoOwner, String repoName, Feed feed) {
-        Intent intent = new Intent(context, WikiActivity.class)
-                .putExtra("owner", repoOwner)
-                .putExtra("repo", repoName);
         // Avoid TransactionTooLargeExceptions on activity launch when page content is too big
-        IntentUtils.putCompressedParcelableExtra(intent, "page_feed", feed, 800_000);
-        return intent;
+        String key = HandoffStore.makeKey("wiki", repoOwner, repoName, feed.getId());
+        HandoffStore.put(key, feed);
+        return new Intent(context, WikiActivity.class)
+                .putExtra("owner", repoOwner)
+                .putExtra("repo", repoName)
+                .putExtra("page_id", feed.getId())
+                .putExtra("page_key", key);
     }
 
     private String mUserLogin;
     private String mRepoName;
+    private String mPageId;
+    private String mPageKey;
     private Feed mWikiPageFeed;
 
     @Override
     public void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
 
+        if (mWikiPageFeed == null) {
+            // The page was lost together with our process, let the wiki list load it again
+            startActivity(WikiListActivity.makeIntentForPageId(this, mUserLogin, mRepoName, mPageId));
+            finish();
+            return;
+        }
         onDataReady();
     }
 
+    @Override
+    protected void onDestroy() {
+        if (mWikiPageFeed != null) {
+            HandoffStore.release(mPageKey);
+        }
+        super.onDestroy();
+    }
+
     @Nullable
     @Override
     protected String getActionBarTitle() {
-        return mWikiPageFeed.getTitle();
+        return mWikiPageFeed != null ? mWikiPageFeed.getTitle() : null;
     }
 
     @Nullable
@@ -62,7 +80,9 @@ public class WikiActivity extends WebViewerActivity {
         super.onInitExtras(extras);
         mUserLogin = extras.getString("owner");
         mRepoName = extras.getString("repo");
-        mWikiPageFeed = IntentUtils.readCompressedParcelableFromBundle(extras, "page_feed");
+        mPageId = extras.getString("page_id");
+        mPageKey = extras.getString("page_key");
+        mWikiPageFeed = HandoffStore.acquire(mPageKey);
     }
 
     @Override
@@ -78,7 +98,7 @@ public class WikiActivity extends WebViewerActivity {
 
     @Override
     protected boolean canSwipeToRefresh() {
-        // content is passed in intent extras
+        // content is handed over by the wiki list
         return false;
     }
 
@@ -29,6 +29,11 @@ public class WikiListActivity extends FragmentContainerActivity {
     public static Intent makeIntent(Context context, String repoOwner,
             String repoName, GitHubWikiPage initialPage) {
         String initialPageId = initialPage != null ? initialPage.sha() : null;
+        return makeIntentForPageId(context, repoOwner, repoName, initialPageId);
+    }
+
+    public static Intent makeIntentForPageId(Context context, String repoOwner,
+            String repoName, String initialPageId) {
         return new Intent(context, WikiListActivity.class)
                 .putExtra("owner", repoOwner)
                 .putExtra("repo", repoName)
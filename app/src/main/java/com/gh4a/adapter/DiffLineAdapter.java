@@ -0,0 +1,283 @@
+package com.gh4a.adapter;
+
+import android.content.Context;
+import android.graphics.Paint;
+import android.graphics.Typeface;
+import android.util.SparseArray;
+import android.util.TypedValue;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.TextView;
+
+import androidx.annotation.NonNull;
+import androidx.core.content.ContextCompat;
+import androidx.recyclerview.widget.RecyclerView;
+
+import com.gh4a.R;
+import com.gh4a.model.ParsedDiff;
+import com.gh4a.utils.ApiHelpers;
+import com.gh4a.utils.HttpImageGetter;
+import com.gh4a.utils.IntentUtils;
+import com.gh4a.utils.StringUtils;
+import com.gh4a.utils.UiUtils;
+import com.gh4a.widget.ReactionBar;
+import com.meisolsson.githubsdk.model.PositionalCommentBase;
+
+import java.util.List;
+
+/**
+ * Shows the lines of a diff with the comments made on them. Only the items that are
+ * visible are laid out, so this also works for diffs that have tens of thousands of lines.
+ */
+public class DiffLineAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder> implements
+        View.OnClickListener {
+    public interface Callback extends ReactionBar.Callback {
+        void onLineClick(int line);
+        void onCommentClick(int line, PositionalCommentBase comment);
+        ReactionBar.Item getReactionItem(PositionalCommentBase comment);
+    }
+
+    private static final int VIEW_TYPE_LINE = 0;
+    private static final int VIEW_TYPE_COMMENT = 1;
+
+    // Lines longer than that are wrapped even if line wrapping is disabled
+    private static final int MAX_UNWRAPPED_LINE_LENGTH = 500;
+
+    private final Context mContext;
+    private final LayoutInflater mInflater;
+    private final HttpImageGetter mImageGetter;
+    private final ReactionBar.ReactionDetailsCache mReactionDetailsCache;
+    private final Callback mCallback;
+    private final float mTextSize;
+
+    private final int mAddedLineBackgroundColor;
+    private final int mRemovedLineBackgroundColor;
+    private final int mChangeLineBackgroundColor;
+    private final int mHighlightedLineBackgroundColor;
+
+    private ParsedDiff mDiff;
+    // Diff line of every item, and the comment for comment items
+    private int[] mItemLines = new int[0];
+    private PositionalCommentBase[] mItemComments = new PositionalCommentBase[0];
+    private int mHighlightStartLine = -1;
+    private int mHighlightEndLine = -1;
+    private IntentUtils.InitialCommentMarker mHighlightedComment;
+    private int mCommentWidth = ViewGroup.LayoutParams.MATCH_PARENT;
+
+    public DiffLineAdapter(Context context, HttpImageGetter imageGetter,
+            ReactionBar.ReactionDetailsCache reactionDetailsCache, float textSize,
+            Callback callback) {
+        mContext = context;
+        mInflater = LayoutInflater.from(context);
+        mImageGetter = imageGetter;
+        mReactionDetailsCache = reactionDetailsCache;
+        mTextSize = textSize;
+        mCallback = callback;
+
+        mAddedLineBackgroundColor = UiUtils.resolveColor(context, R.attr.colorDiffAddBackground);
+        mRemovedLineBackgroundColor = UiUtils.resolveColor(context, R.attr.colorDiffRemoveBackground);
+        mChangeLineBackgroundColor = ContextCompat.getColor(context, R.color.diff_change_background);
+        mHighlightedLineBackgroundColor =
+                ContextCompat.getColor(context, R.color.diff_highlighted_background);
+    }
+
+    /**
+     * @param commentsByLine Comments to show below the diff lines, keyed by line index
+     * @param highlightStartLine First line index to highlight, or -1
+     * @param highlightEndLine Last line index to highlight, or -1
+     * @param highlightedComment Marker for the comment to highlight, or null
+     */
+    public void setData(ParsedDiff diff, SparseArray<List<PositionalCommentBase>> commentsByLine,
+            int highlightStartLine, int highlightEndLine,
+            IntentUtils.InitialCommentMarker highlightedComment) {
+        int lineCount = diff.getLineCount();
+        int itemCount = lineCount;
+        for (int i = 0; i < commentsByLine.size(); i++) {
+            if (commentsByLine.keyAt(i) < lineCount) {
+                itemCount += commentsByLine.valueAt(i).size();
+            }
+        }
+
+        int[] itemLines = new int[itemCount];
+        PositionalCommentBase[] itemComments = new PositionalCommentBase[itemCount];
+        int position = 0;
+        for (int line = 0; line < lineCount; line++) {
+            itemLines[position++] = line;
+            List<PositionalCommentBase> comments = commentsByLine.get(line);
+            if (comments != null) {
+                for (PositionalCommentBase comment : comments) {
+                    itemLines[position] = line;
+                    itemComments[position++] = comment;
+                }
+            }
+        }
+
+        mDiff = diff;
+        mItemLines = itemLines;
+        mItemComments = itemComments;
+        mHighlightStartLine = highlightStartLine;
+        mHighlightEndLine = highlightEndLine;
+        mHighlightedComment = highlightedComment;
+        notifyDataSetChanged();
+    }
+
+    /**
+     * Sets the width comment items should have, or MATCH_PARENT to fill the list.
+     * Used for keeping comments readable when lines aren't wrapped.
+     */
+    public void setCommentWidth(int width) {
+        if (width != mCommentWidth) {
+            mCommentWidth = width;
+            notifyDataSetChanged();
+        }
+    }
+
+    /**
+     * Returns the width needed for showing the diff lines without wrapping them.
+     */
+    public int getUnwrappedWidth() {
+        if (mDiff == null) {
+            return 0;
+        }
+        Paint paint = new Paint();
+        paint.setTypeface(Typeface.MONOSPACE);
+        paint.setTextSize(mTextSize);
+        int length = Math.min(mDiff.getMaxLineLength(), MAX_UNWRAPPED_LINE_LENGTH);
+        int padding = mContext.getResources().getDimensionPixelSize(R.dimen.diff_line_padding);
+        return (int) Math.ceil(paint.measureText("m") * length) + 2 * padding;
+    }
+
+    public int getPositionForLine(int line) {
+        for (int i = 0; i < mItemLines.length; i++) {
+            if (mItemLines[i] == line && mItemComments[i] == null) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    public int getPositionForComment(IntentUtils.InitialCommentMarker marker) {
+        for (int i = 0; i < mItemComments.length; i++) {
+            PositionalCommentBase comment = mItemComments[i];
+            if (comment != null && marker.matches(comment.id(), null)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public int getItemCount() {
+        return mItemLines.length;
+    }
+
+    @Override
+    public int getItemViewType(int position) {
+        return mItemComments[position] != null ? VIEW_TYPE_COMMENT : VIEW_TYPE_LINE;
+    }
+
+    @NonNull
+    @Override
+    public RecyclerView.ViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+        final RecyclerView.ViewHolder holder;
+        if (viewType == VIEW_TYPE_COMMENT) {
+            View view = mInflater.inflate(R.layout.row_diff_comment, parent, false);
+            holder = new CommentViewHolder(view, mReactionDetailsCache);
+        } else {
+            TextView view = (TextView) mInflater.inflate(R.layout.row_diff_line, parent, false);
+            view.setTextSize(TypedValue.COMPLEX_UNIT_PX, mTextSize);
+            holder = new LineViewHolder(view);
+        }
+        holder.itemView.setOnClickListener(this);
+        holder.itemView.setTag(holder);
+        return holder;
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull RecyclerView.ViewHolder holder, int position) {
+        int line = mItemLines[position];
+        PositionalCommentBase comment = mItemComments[position];
+        if (comment != null) {
+            bindComment((CommentViewHolder) holder, comment);
+        } else {
+            bindLine((LineViewHolder) holder, line);
+        }
+    }
+
+    private void bindLine(LineViewHolder holder, int line) {
+        final int backgroundColor;
+        if (line >= mHighlightStartLine && line <= mHighlightEndLine) {
+            backgroundColor = mHighlightedLineBackgroundColor;
+        } else {
+            switch (mDiff.getLineType(line)) {
+                case ParsedDiff.TYPE_HUNK_HEADER: backgroundColor = mChangeLineBackgroundColor; break;
+                case ParsedDiff.TYPE_ADDED: backgroundColor = mAddedLineBackgroundColor; break;
+                case ParsedDiff.TYPE_REMOVED: backgroundColor = mRemovedLineBackgroundColor; break;
+                default: backgroundColor = 0; break;
+            }
+        }
+        holder.mText.setBackgroundColor(backgroundColor);
+        holder.mText.setText(mDiff.getLine(line));
+    }
+
+    private void bindComment(CommentViewHolder holder, PositionalCommentBase comment) {
+        ViewGroup.MarginLayoutParams lp =
+                (ViewGroup.MarginLayoutParams) holder.itemView.getLayoutParams();
+        lp.width = mCommentWidth == ViewGroup.LayoutParams.MATCH_PARENT
+                ? ViewGroup.LayoutParams.MATCH_PARENT
+                : mCommentWidth - lp.leftMargin - lp.rightMargin;
+        holder.itemView.setLayoutParams(lp);
+
+        boolean highlighted = mHighlightedComment != null
+                && mHighlightedComment.matches(comment.id(), null);
+        holder.itemView.setBackgroundResource(highlighted
+                ? R.drawable.diff_comment_highlighted_background
+                : R.drawable.diff_comment_background);
+
+        holder.mHeader.setText(mContext.getString(R.string.commit_comment_header,
+                ApiHelpers.getUserLogin(mContext, comment.user()),
+                StringUtils.formatRelativeTime(mContext, comment.createdAt(), true)));
+        mImageGetter.bind(holder.mBody, comment.bodyHtml(), comment.id());
+        holder.mReactions.setCallback(mCallback, mCallback.getReactionItem(comment));
+        holder.mReactions.setReactions(comment.reactions());
+    }
+
+    @Override
+    public void onClick(View view) {
+        RecyclerView.ViewHolder holder = (RecyclerView.ViewHolder) view.getTag();
+        int position = holder.getBindingAdapterPosition();
+        if (position == RecyclerView.NO_POSITION) {
+            return;
+        }
+        PositionalCommentBase comment = mItemComments[position];
+        if (comment != null) {
+            mCallback.onCommentClick(mItemLines[position], comment);
+        } else {
+            mCallback.onLineClick(mItemLines[position]);
+        }
+    }
+
+    private static class LineViewHolder extends RecyclerView.ViewHolder {
+        private final TextView mText;
+
+        private LineViewHolder(TextView view) {
+            super(view);
+            mText = view;
+        }
+    }
+
+    private static class CommentViewHolder extends RecyclerView.ViewHolder {
+        private final TextView mHeader;
+        private final TextView mBody;
+        private final ReactionBar mReactions;
+
+        private CommentViewHolder(View view, ReactionBar.ReactionDetailsCache reactionDetailsCache) {
+            super(view);
+            mHeader = view.findViewById(R.id.tv_header);
+            mBody = view.findViewById(R.id.tv_desc);
+            mReactions = view.findViewById(R.id.reactions);
+            mReactions.setDetailsCache(reactionDetailsCache);
+        }
+    }
+}
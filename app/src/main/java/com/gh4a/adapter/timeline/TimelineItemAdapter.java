@@ -18,6 +18,7 @@ import com.gh4a.widget.ReactionBar;
 import com.meisolsson.githubsdk.model.GitHubCommentBase;
 import com.meisolsson.githubsdk.model.Reaction;
 import com.meisolsson.githubsdk.model.Reactions;
+import com.meisolsson.githubsdk.model.Review;
 import com.meisolsson.githubsdk.model.User;
 
 import java.util.Collection;
@@ -187,6 +188,26 @@ public class TimelineItemAdapter
         mDontClearCacheOnClear = true;
     }
 
+    /**
+     * Renders the bodies of the given items in the background, so that binding them
+     * doesn't need to do that while scrolling.
+     */
+    public void prerenderBodies(List<TimelineItem> items) {
+        for (TimelineItem item : items) {
+            if (item instanceof TimelineItem.TimelineComment) {
+                GitHubCommentBase comment = ((TimelineItem.TimelineComment) item).comment();
+                mImageGetter.encodeAsync(mContext, comment.id(), comment.updatedAt(),
+                        comment.bodyHtml(), comment.body());
+            } else if (item instanceof TimelineItem.TimelineReview) {
+                Review review = ((TimelineItem.TimelineReview) item).review();
+                // Editing a review doesn't change its submission time, so let the body
+                // be hashed instead
+                mImageGetter.encodeAsync(mContext, review.id(), null, review.bodyHtml(),
+                        review.body());
+            }
+        }
+    }
+
     public Set<User> getUsers() {
         final HashSet<User> users = new HashSet<>();
         for (int i = 0; i < getCount(); i++) {
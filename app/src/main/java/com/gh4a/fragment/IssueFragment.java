@@ -20,10 +20,11 @@ import com.meisolsson.githubsdk.service.issues.IssueCommentService;
 import com.meisolsson.githubsdk.service.issues.IssueEventService;
 import com.meisolsson.githubsdk.service.issues.IssueTimelineService;
 
-import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
 import java.util.List;
 
+import io.reactivex.Flowable;
+import io.reactivex.Observable;
 import io.reactivex.Single;
 import io.reactivex.schedulers.Schedulers;
 import retrofit2.Response;
@@ -73,29 +74,23 @@ public class IssueFragment extends IssueFragmentBase {
     }
 
     @Override
-    protected Single<List<TimelineItem>> onCreateDataSingle(boolean bypassCache) {
+    protected Observable<List<TimelineItem>> onCreateDataObservable(boolean bypassCache) {
         final int issueNumber = mIssue.number();
         final IssueTimelineService timelineService = ServiceFactory.get(IssueTimelineService.class, bypassCache);
         final IssueCommentService commentService =
                 ServiceFactory.get(IssueCommentService.class, bypassCache);
 
-        Single<List<TimelineItem.TimelineComment>> commentSingle = ApiHelpers.PageIterator
-                .toSingle(page -> commentService.getIssueComments(mRepoOwner, mRepoName, issueNumber, page))
-                .compose(RxUtils.mapList(TimelineItem.TimelineComment::new))
-                .subscribeOn(Schedulers.io());
-        Single<List<TimelineItem.TimelineEvent>> eventSingle = ApiHelpers.PageIterator
-                .toSingle(page -> timelineService.getTimeline(mRepoOwner, mRepoName, issueNumber, page))
-                .compose(RxUtils.filter(event -> INTERESTING_EVENTS.contains(event.event())))
-                .compose((RxUtils.mapList(TimelineItem.TimelineEvent::new)))
-                .subscribeOn(Schedulers.io());
+        Flowable<List<TimelineItem>> commentFlowable = ApiHelpers.PageIterator
+                .toFlowable(page -> commentService.getIssueComments(mRepoOwner, mRepoName, issueNumber, page))
+                .subscribeOn(Schedulers.io())
+                .compose(RxUtils.mapPages(TimelineItem.TimelineComment::new));
+        Flowable<List<TimelineItem>> eventFlowable = ApiHelpers.PageIterator
+                .toFlowable(page -> timelineService.getTimeline(mRepoOwner, mRepoName, issueNumber, page))
+                .subscribeOn(Schedulers.io())
+                .compose(RxUtils.filterPages(event -> INTERESTING_EVENTS.contains(event.event())))
+                .compose(RxUtils.mapPages(TimelineItem.TimelineEvent::new));
 
-        return Single.zip(commentSingle, eventSingle, (comments, events) -> {
-            ArrayList<TimelineItem> result = new ArrayList<>();
-            result.addAll(comments);
-            result.addAll(events);
-            Collections.sort(result, TimelineItem.COMPARATOR);
-            return result;
-        });
+        return mergeTimelineItems(Arrays.asList(commentFlowable, eventFlowable));
     }
 
     @Override
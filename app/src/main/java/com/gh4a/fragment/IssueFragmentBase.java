@@ -67,10 +67,14 @@ import com.meisolsson.githubsdk.model.request.ReactionRequest;
 import com.meisolsson.githubsdk.service.reactions.ReactionService;
 import com.meisolsson.githubsdk.service.issues.IssueCommentService;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Set;
 
+import io.reactivex.Flowable;
+import io.reactivex.Observable;
 import io.reactivex.Single;
 import retrofit2.Response;
 
@@ -303,8 +307,42 @@ public abstract class IssueFragmentBase extends ListDataBaseFragment<TimelineIte
         return mAdapter;
     }
 
+    @Override
+    protected Single<List<TimelineItem>> onCreateDataSingle(boolean bypassCache) {
+        return onCreateDataObservable(bypassCache).lastOrError();
+    }
+
+    @Override
+    protected abstract Observable<List<TimelineItem>> onCreateDataObservable(boolean bypassCache);
+
+    @Override
+    protected void onPrepareForIncrementalUpdate(RootAdapter<TimelineItem, ?> adapter) {
+        // Only more items are added, so the already rendered ones stay valid
+        mAdapter.suppressCacheClearOnNextClear();
+    }
+
+    /**
+     * Merges the given sources of timeline item chunks into a stream of sorted timelines,
+     * each containing all items loaded up to that point.
+     */
+    protected static Observable<List<TimelineItem>> mergeTimelineItems(
+            List<Flowable<List<TimelineItem>>> sources) {
+        return Flowable.merge(sources)
+                .<List<TimelineItem>>scanWith(ArrayList::new, (result, chunk) -> {
+                    ArrayList<TimelineItem> merged = new ArrayList<>(result.size() + chunk.size());
+                    merged.addAll(result);
+                    merged.addAll(chunk);
+                    Collections.sort(merged, TimelineItem.COMPARATOR);
+                    return merged;
+                })
+                // drop the initial empty list
+                .skip(1)
+                .toObservable();
+    }
+
     @Override
     protected void onAddData(RootAdapter<TimelineItem, ?> adapter, List<TimelineItem> data) {
+        mAdapter.prerenderBodies(data);
         super.onAddData(adapter, data);
         if (mInitialComment != null) {
             for (int i = 0; i < data.size(); i++) {
@@ -314,17 +352,20 @@ public abstract class IssueFragmentBase extends ListDataBaseFragment<TimelineIte
                     TimelineItem.TimelineComment comment = (TimelineItem.TimelineComment) item;
                     if (mInitialComment.matches(comment.comment().id(), comment.getCreatedAt())) {
                         scrollToAndHighlightPosition(i + 1 /* adjust for header view */);
+                        mInitialComment = null;
                         break;
                     }
                 } else if (item instanceof TimelineItem.TimelineReview) {
                     TimelineItem.TimelineReview review = (TimelineItem.TimelineReview) item;
                     if (mInitialComment.matches(review.review().id(), review.getCreatedAt())) {
                         scrollToAndHighlightPosition(i + 1 /* adjust for header view */);
+                        mInitialComment = null;
                         break;
                     }
                 }
             }
-            mInitialComment = null;
+            // If the comment wasn't found, it might be part of data that is still loading,
+            // so keep looking for it on the next update
         }
 
         updateMentionUsers();
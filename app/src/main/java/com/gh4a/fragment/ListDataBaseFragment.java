@@ -8,12 +8,14 @@ import android.view.View;
 
 import com.gh4a.adapter.RootAdapter;
 
+import io.reactivex.Observable;
 import io.reactivex.Single;
 import io.reactivex.disposables.Disposable;
 
 public abstract class ListDataBaseFragment<T> extends LoadingListFragmentBase {
     private RootAdapter<T, ? extends RecyclerView.ViewHolder> mAdapter;
     private Disposable mSubscription;
+    private boolean mHasPartialData;
 
     @Override
     public void onViewCreated(View view, Bundle savedInstanceState) {
@@ -60,16 +62,21 @@ public abstract class ListDataBaseFragment<T> extends LoadingListFragmentBase {
 
     private void loadData(boolean force) {
         List<T> initialData = force ? null : onGetInitialData();
+        mHasPartialData = false;
         if (initialData != null) {
             handleNewData(initialData);
         } else {
-            mSubscription = onCreateDataSingle(force)
-                    .compose(makeLoaderSingle(0, force))
+            mSubscription = onCreateDataObservable(force)
+                    .compose(makeLoaderObservable(0, force))
                     .subscribe(this::handleNewData, this::handleLoadFailure);
         }
     }
 
     private void handleNewData(List<T> result) {
+        if (mHasPartialData) {
+            onPrepareForIncrementalUpdate(mAdapter);
+        }
+        mHasPartialData = true;
         mAdapter.clear();
         onAddData(mAdapter, result);
         setContentShown(true);
@@ -77,6 +84,23 @@ public abstract class ListDataBaseFragment<T> extends LoadingListFragmentBase {
     }
 
     protected abstract Single<List<T>> onCreateDataSingle(boolean bypassCache);
+
+    /**
+     * Creates the data stream to be displayed. Each emitted list replaces the previously
+     * shown one, so subclasses able to load their data incrementally can emit growing
+     * lists to show the first items before everything has been loaded.
+     */
+    protected Observable<List<T>> onCreateDataObservable(boolean bypassCache) {
+        return onCreateDataSingle(bypassCache).toObservable();
+    }
+
+    /**
+     * Called before the currently shown data is replaced by a more complete list
+     * belonging to the same load.
+     */
+    protected void onPrepareForIncrementalUpdate(RootAdapter<T, ?> adapter) {
+    }
+
     protected List<T> onGetInitialData() {
         return null;
     }
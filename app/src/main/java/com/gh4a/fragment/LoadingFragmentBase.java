@@ -19,7 +19,10 @@ import com.gh4a.widget.SwipeRefreshLayout;
 import com.philosophicalhacker.lib.RxLoader;
 
 import fr.castorflex.android.smoothprogressbar.SmoothProgressBar;
+import io.reactivex.ObservableTransformer;
 import io.reactivex.SingleTransformer;
+import io.reactivex.android.schedulers.AndroidSchedulers;
+import io.reactivex.schedulers.Schedulers;
 
 public abstract class LoadingFragmentBase extends Fragment implements
         BaseActivity.RefreshableChild, SwipeRefreshLayout.ChildScrollDelegate {
@@ -84,6 +87,13 @@ public abstract class LoadingFragmentBase extends Fragment implements
                 .compose(mRxLoader.makeSingleTransformer(id, force));
     }
 
+    protected <T> ObservableTransformer<T, T> makeLoaderObservable(int id, boolean force) {
+        return upstream -> upstream
+                .subscribeOn(Schedulers.io())
+                .observeOn(AndroidSchedulers.mainThread())
+                .compose(mRxLoader.makeObservableTransformer(id, force));
+    }
+
     protected void handleLoadFailure(Throwable error) {
         BaseActivity activity = getBaseActivity();
         if (activity != null) {
@@ -67,7 +67,7 @@ import com.meisolsson.githubsdk.service.repositories.RepositoryStatusService;
 
 import java.net.HttpURLConnection;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -76,6 +76,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
+import io.reactivex.Flowable;
 import io.reactivex.Observable;
 import io.reactivex.Single;
 import io.reactivex.schedulers.Schedulers;
@@ -193,7 +194,7 @@ public class PullRequestConversationFragment extends IssueFragmentBase {
    }
 
     @Override
-    protected Single<List<TimelineItem>> onCreateDataSingle(boolean bypassCache) {
+    protected Observable<List<TimelineItem>> onCreateDataObservable(boolean bypassCache) {
         final int issueNumber = mIssue.number();
         final IssueTimelineService timelineService =
                 ServiceFactory.get(IssueTimelineService.class, bypassCache);
@@ -204,13 +205,13 @@ public class PullRequestConversationFragment extends IssueFragmentBase {
         final PullRequestReviewCommentService prCommentService =
                 ServiceFactory.get(PullRequestReviewCommentService.class, bypassCache);
 
-        Single<List<TimelineItem>> issueCommentsSingle = ApiHelpers.PageIterator
-                .toSingle(page -> commentService.getIssueComments(mRepoOwner, mRepoName, issueNumber, page))
-                .compose(RxUtils.mapList(TimelineItem.TimelineComment::new));
-        Single<List<TimelineItem>> eventsSingle = ApiHelpers.PageIterator
-                .toSingle(page -> timelineService.getTimeline(mRepoOwner, mRepoName, issueNumber, page))
-                .compose(RxUtils.filter(event -> INTERESTING_EVENTS.contains(event.event())))
-                .compose(RxUtils.mapList(TimelineItem.TimelineEvent::new));
+        Flowable<List<TimelineItem>> issueCommentsFlowable = ApiHelpers.PageIterator
+                .toFlowable(page -> commentService.getIssueComments(mRepoOwner, mRepoName, issueNumber, page))
+                .compose(RxUtils.mapPages(TimelineItem.TimelineComment::new));
+        Flowable<List<TimelineItem>> eventsFlowable = ApiHelpers.PageIterator
+                .toFlowable(page -> timelineService.getTimeline(mRepoOwner, mRepoName, issueNumber, page))
+                .compose(RxUtils.filterPages(event -> INTERESTING_EVENTS.contains(event.event())))
+                .compose(RxUtils.mapPages(TimelineItem.TimelineEvent::new));
 
         Single<List<Review>> reviewsSingle = ApiHelpers.PageIterator
                 .toSingle(page -> reviewService.getReviews(mRepoOwner, mRepoName, issueNumber, page))
@@ -294,20 +295,17 @@ public class PullRequestConversationFragment extends IssueFragmentBase {
                         .compose(RxUtils.filter(comment -> comment.pullRequestReviewId() == null))
                         .compose(RxUtils.mapList(TimelineItem.TimelineComment::new));
 
-        return Single.zip(
-                issueCommentsSingle.subscribeOn(Schedulers.io()),
-                eventsSingle.subscribeOn(Schedulers.io()),
-                reviewItemsSingle.subscribeOn(Schedulers.io()),
-                prCommentsWithoutReviewSingle.subscribeOn(Schedulers.io()),
-                (comments, events, reviewItems, commentsWithoutReview) -> {
-            ArrayList<TimelineItem> result = new ArrayList<>();
-            result.addAll(comments);
-            result.addAll(events);
-            result.addAll(reviewItems);
-            result.addAll(commentsWithoutReview);
-            Collections.sort(result, TimelineItem.COMPARATOR);
-            return result;
-        });
+        // Reviews can only be assembled once all of their comments are known, but issue
+        // comments and events can be shown while the remaining data is still loading
+        Flowable<List<TimelineItem>> reviewItemsFlowable = reviewItemsSingle
+                .<List<TimelineItem>>map(ArrayList::new)
+                .toFlowable();
+
+        return mergeTimelineItems(Arrays.asList(
+                issueCommentsFlowable.subscribeOn(Schedulers.io()),
+                eventsFlowable.subscribeOn(Schedulers.io()),
+                reviewItemsFlowable.subscribeOn(Schedulers.io()),
+                prCommentsWithoutReviewSingle.toFlowable().subscribeOn(Schedulers.io())));
     }
 
     @Override
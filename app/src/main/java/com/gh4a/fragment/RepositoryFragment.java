@@ -416,7 +416,8 @@ public class RepositoryFragment extends LoadingFragmentBase implements
                     if (htmlOpt.isPresent()) {
                         String html = HtmlUtils.rewriteRelativeUrls(htmlOpt.get(),
                                 repoOwner, repoName, mRef != null ? mRef : mRepository.defaultBranch(), "");
-                        mImageGetter.encode(context, id, html);
+                        // The README has no update time, so is cached by contents
+                        mImageGetter.encode(context, id, null, html);
                         return Optional.of(html);
                     }
                     return Optional.<String>absent();
@@ -16,18 +16,25 @@ import androidx.preference.TwoStatePreference;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
+import android.text.format.Formatter;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.TextView;
 
 import com.gh4a.Gh4Application;
+import com.gh4a.HttpCacheManager;
 import com.gh4a.R;
+import com.gh4a.ServiceFactory;
 import com.gh4a.activities.IssueListActivity;
 import com.gh4a.activities.RepositoryActivity;
+import com.gh4a.utils.RxUtils;
 import com.gh4a.worker.NotificationsWorker;
 import com.gh4a.widget.IntegerListPreference;
 
+import io.reactivex.Single;
+import io.reactivex.disposables.Disposable;
+
 public class SettingsFragment extends PreferenceFragmentCompat implements
         Preference.OnPreferenceClickListener, Preference.OnPreferenceChangeListener {
     public interface OnStateChangeListener {
@@ -42,15 +49,18 @@ public class SettingsFragment extends PreferenceFragmentCompat implements
     public static final String KEY_GIF_LOADING = "http_gif_load_mode";
     public static final String KEY_NOTIFICATIONS = "notifications";
     public static final String KEY_NOTIFICATION_INTERVAL = "notification_interval";
+    private static final String KEY_HTTP_CACHE = "http_cache";
     private static final String KEY_ABOUT = "about";
     private static final String KEY_OPEN_SOURCE_COMPONENTS = "open_source_components";
 
     private OnStateChangeListener mListener;
     private IntegerListPreference mThemePref;
+    private Preference mHttpCachePref;
     private Preference mAboutPref;
     private Preference mOpenSourcePref;
     private TwoStatePreference mNotificationsPref;
     private IntegerListPreference mNotificationIntervalPref;
+    private Disposable mHttpCacheSizeSubscription;
 
     @Override
     public void onAttach(Context context) {
@@ -69,6 +79,11 @@ public class SettingsFragment extends PreferenceFragmentCompat implements
         mThemePref = findPreference(KEY_THEME);
         mThemePref.setOnPreferenceChangeListener(this);
 
+        mHttpCachePref = findPreference(KEY_HTTP_CACHE);
+        mHttpCachePref.setOnPreferenceClickListener(this);
+        updateHttpCacheSummary(Single.fromCallable(
+                () -> ServiceFactory.getCacheManager().getUsedSize()));
+
         mAboutPref = findPreference(KEY_ABOUT);
         mAboutPref.setOnPreferenceClickListener(this);
         mAboutPref.setSummary(getAppName());
@@ -108,9 +123,24 @@ public class SettingsFragment extends PreferenceFragmentCompat implements
         return false;
     }
 
+    @Override
+    public void onDestroy() {
+        super.onDestroy();
+        if (mHttpCacheSizeSubscription != null) {
+            mHttpCacheSizeSubscription.dispose();
+        }
+    }
+
     @Override
     public boolean onPreferenceClick(Preference pref) {
-        if (pref == mAboutPref) {
+        if (pref == mHttpCachePref) {
+            updateHttpCacheSummary(Single.fromCallable(() -> {
+                HttpCacheManager cacheManager = ServiceFactory.getCacheManager();
+                cacheManager.clear();
+                return cacheManager.getUsedSize();
+            }));
+            return true;
+        } else if (pref == mAboutPref) {
             boolean loggedIn = Gh4Application.get().isAuthorized();
             AboutDialogFragment.newInstance(getAppName(), loggedIn)
                     .show(getChildFragmentManager(), "about");
@@ -123,6 +153,18 @@ public class SettingsFragment extends PreferenceFragmentCompat implements
         return false;
     }
 
+    private void updateHttpCacheSummary(Single<Long> usedSizeSingle) {
+        if (mHttpCacheSizeSubscription != null) {
+            mHttpCacheSizeSubscription.dispose();
+        }
+        mHttpCacheSizeSubscription = usedSizeSingle
+                .compose(RxUtils::doInBackground)
+                .subscribe(size -> {
+                    String formattedSize = Formatter.formatShortFileSize(getActivity(), size);
+                    mHttpCachePref.setSummary(getString(R.string.http_cache_summary, formattedSize));
+                }, error -> {});
+    }
+
     private String getAppName() {
         String version = getAppVersion();
         return getString(R.string.app_name) + " v" + version;
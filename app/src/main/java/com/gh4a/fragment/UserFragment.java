@@ -397,10 +397,9 @@ public class UserFragment extends LoadingFragmentBase implements
             return;
         }
         final OrganizationMemberService service =
-                ServiceFactory.get(OrganizationMemberService.class, force);
+                ServiceFactory.get(OrganizationMemberService.class, force, null, null, 1);
         ApiHelpers.PageIterator
-                .toSingle(page -> service.getMembers(mUser.login(), page))
-                .map(memberList -> memberList.size())
+                .count(page -> service.getMembers(mUser.login(), page))
                 .compose(makeLoaderSingle(ID_LOADER_ORG_MEMBER_COUNT, force))
                 .subscribe(count -> {
                     OverviewRow membersRow = mContentView.findViewById(R.id.members_row);
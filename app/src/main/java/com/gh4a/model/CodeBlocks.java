@@ -0,0 +1,80 @@
+package com.gh4a.model;
+
+import android.text.TextUtils;
+
+import java.util.Arrays;
+
+/**
+ * Splits a file into blocks of lines that can be handed to the code viewer one at a time,
+ * so large files don't need to be escaped and put into the document as a whole.
+ * Only block boundaries are indexed on creation, block contents are created when asked for.
+ *
+ * The code viewer highlights every block separately, without knowing the state at the end
+ * of the previous one. Tokens spanning a block boundary, like block comments or multi-line
+ * strings, are thus highlighted incorrectly on one side of the boundary.
+ */
+public class CodeBlocks {
+    public static final int LINES_PER_BLOCK = 200;
+
+    private final String mData;
+    // Start offset of every block, plus the end of the last block
+    private final int[] mBlockStarts;
+    private final int mBlockCount;
+    private final int mLineCount;
+
+    public CodeBlocks(String data) {
+        // Like in the unchunked viewer, a trailing newline doesn't start another line
+        int length = data.endsWith("\n") ? data.length() - 1 : data.length();
+        mData = data;
+
+        int[] starts = new int[16];
+        int blockCount = 0;
+        int lineCount = 0;
+        int start = 0;
+        while (true) {
+            if (lineCount % LINES_PER_BLOCK == 0) {
+                if (blockCount + 1 >= starts.length) {
+                    starts = Arrays.copyOf(starts, starts.length * 2);
+                }
+                starts[blockCount++] = start;
+            }
+            lineCount++;
+            int end = data.indexOf('\n', start);
+            if (end < 0 || end >= length) {
+                break;
+            }
+            start = end + 1;
+        }
+        starts[blockCount] = length + 1;
+
+        mBlockStarts = starts;
+        mBlockCount = blockCount;
+        mLineCount = lineCount;
+    }
+
+    public int getBlockCount() {
+        return mBlockCount;
+    }
+
+    public int getLineCount() {
+        return mLineCount;
+    }
+
+    /**
+     * Returns the 1-based number of the first line in the given block.
+     */
+    public int getFirstLine(int block) {
+        return block * LINES_PER_BLOCK + 1;
+    }
+
+    /**
+     * Returns the HTML escaped lines of the given block, separated by newlines.
+     */
+    public String getBlockHtml(int block) {
+        if (block < 0 || block >= mBlockCount) {
+            return "";
+        }
+        return TextUtils.htmlEncode(mData.substring(mBlockStarts[block],
+                mBlockStarts[block + 1] - 1));
+    }
+}
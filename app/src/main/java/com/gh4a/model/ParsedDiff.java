@@ -0,0 +1,171 @@
+package com.gh4a.model;
+
+import androidx.annotation.Nullable;
+
+import com.gh4a.utils.StringUtils;
+
+import java.util.Arrays;
+
+/**
+ * Line based view of a unified diff, which avoids splitting the whole patch up front:
+ * only the line boundaries are indexed on creation, line texts are created when asked for
+ * and line numbers are calculated lazily up to the line that is asked for.
+ */
+public class ParsedDiff {
+    public static final int TYPE_CONTEXT = 0;
+    public static final int TYPE_HUNK_HEADER = 1;
+    public static final int TYPE_ADDED = 2;
+    public static final int TYPE_REMOVED = 3;
+
+    private final String mDiff;
+    // Start offset of every line, plus the end of the last line
+    private final int[] mLineStarts;
+    private final int mLineCount;
+    private final int mMaxLineLength;
+
+    private final int[] mLeftLines;
+    private final int[] mRightLines;
+    private int mNumberedLineCount;
+
+    public ParsedDiff(@Nullable String diff) {
+        mDiff = diff != null ? diff : "";
+
+        int[] starts = new int[64];
+        int count = 0;
+        int maxLength = 0;
+        int start = 0;
+        if (diff != null) {
+            while (true) {
+                int end = mDiff.indexOf('\n', start);
+                if (count + 1 >= starts.length) {
+                    starts = Arrays.copyOf(starts, starts.length * 2);
+                }
+                starts[count++] = start;
+                if (end < 0) {
+                    maxLength = Math.max(maxLength, mDiff.length() - start);
+                    start = mDiff.length() + 1;
+                    break;
+                }
+                maxLength = Math.max(maxLength, end - start);
+                start = end + 1;
+            }
+            starts[count] = start;
+            // Like String.split(), drop trailing empty lines, but keep a single line
+            // for an empty diff
+            while (count > 0 && starts[count] - starts[count - 1] == 1) {
+                count--;
+            }
+            if (mDiff.isEmpty()) {
+                count = 1;
+            }
+        }
+
+        mLineStarts = starts;
+        mLineCount = count;
+        mMaxLineLength = maxLength;
+        mLeftLines = new int[count];
+        mRightLines = new int[count];
+    }
+
+    public int getLineCount() {
+        return mLineCount;
+    }
+
+    public int getMaxLineLength() {
+        return mMaxLineLength;
+    }
+
+    public String getLine(int line) {
+        return mDiff.substring(mLineStarts[line], mLineStarts[line + 1] - 1);
+    }
+
+    public int getLineType(int line) {
+        int start = mLineStarts[line];
+        if (mLineStarts[line + 1] - 1 - start <= 0) {
+            return TYPE_CONTEXT;
+        }
+        switch (mDiff.charAt(start)) {
+            case '+': return TYPE_ADDED;
+            case '-': return TYPE_REMOVED;
+            case '@': return mDiff.startsWith("@@", start) ? TYPE_HUNK_HEADER : TYPE_CONTEXT;
+            default: return TYPE_CONTEXT;
+        }
+    }
+
+    /**
+     * Returns the line number in the old file (hunk headers: the line before the hunk),
+     * or -1 for lines before the first hunk.
+     */
+    public int getLeftLine(int line) {
+        ensureNumbered(line);
+        return mLeftLines[line];
+    }
+
+    /**
+     * Returns the line number in the new file (hunk headers: the line before the hunk),
+     * or -1 for lines before the first hunk.
+     */
+    public int getRightLine(int line) {
+        ensureNumbered(line);
+        return mRightLines[line];
+    }
+
+    /**
+     * Returns the index of the first line having the given line number on the given side,
+     * or -1 if there's no such line.
+     */
+    public int findLine(int number, boolean isRight) {
+        if (number == -1) {
+            return -1;
+        }
+        for (int i = 0; i < mLineCount; i++) {
+            int lineNumber = isRight ? getRightLine(i) : getLeftLine(i);
+            if (lineNumber == number) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private void ensureNumbered(int line) {
+        if (line < mNumberedLineCount) {
+            return;
+        }
+        int left = mNumberedLineCount > 0 ? mLeftLines[mNumberedLineCount - 1] : -1;
+        int right = mNumberedLineCount > 0 ? mRightLines[mNumberedLineCount - 1] : -1;
+        for (int i = mNumberedLineCount; i <= line; i++) {
+            int type = getLineType(i);
+            boolean beforeFirstHunk = left < 0 && right < 0 && type != TYPE_HUNK_HEADER;
+            if (beforeFirstHunk || mDiff.startsWith("\\", mLineStarts[i])) {
+                // Lines like '--- a/file' and '\ No newline at end of file' markers
+                // don't belong to either file, so they keep the previous numbers
+                mLeftLines[i] = left;
+                mRightLines[i] = right;
+                continue;
+            }
+            switch (type) {
+                case TYPE_HUNK_HEADER: {
+                    int[] lineNumbers = StringUtils.extractDiffHunkLineNumbers(getLine(i));
+                    if (lineNumbers != null) {
+                        left = lineNumbers[0];
+                        right = lineNumbers[1];
+                    }
+                    break;
+                }
+                case TYPE_ADDED:
+                    ++right;
+                    break;
+                case TYPE_REMOVED:
+                    ++left;
+                    break;
+                default:
+                    ++left;
+                    ++right;
+                    break;
+            }
+            mLeftLines[i] = left;
+            mRightLines[i] = right;
+        }
+        mNumberedLineCount = line + 1;
+    }
+}
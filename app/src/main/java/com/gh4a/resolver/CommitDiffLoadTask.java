@@ -12,6 +12,8 @@ import com.gh4a.ServiceFactory;
 import com.gh4a.activities.CommitActivity;
 import com.gh4a.activities.CommitDiffViewerActivity;
 import com.gh4a.utils.ApiHelpers;
+import com.gh4a.utils.Optional;
+import com.gh4a.utils.RxUtils;
 import com.meisolsson.githubsdk.model.Commit;
 import com.meisolsson.githubsdk.model.GitHubFile;
 import com.meisolsson.githubsdk.model.git.GitComment;
@@ -21,6 +23,7 @@ import com.meisolsson.githubsdk.service.repositories.RepositoryCommitService;
 import java.util.List;
 
 import io.reactivex.Single;
+import io.reactivex.functions.Predicate;
 
 public class CommitDiffLoadTask extends DiffLoadTask<GitComment> {
     @VisibleForTesting
@@ -51,11 +54,13 @@ public class CommitDiffLoadTask extends DiffLoadTask<GitComment> {
     }
 
     @Override
-    protected Single<List<GitHubFile>> getFiles() throws ApiRequestException {
+    protected Single<Optional<GitHubFile>> findFile(Predicate<GitHubFile> predicate)
+            throws ApiRequestException {
         RepositoryCommitService service = ServiceFactory.get(RepositoryCommitService.class, false);
         return service.getCommit(mRepoOwner, mRepoName, mSha)
                 .map(ApiHelpers::throwOnFailure)
-                .map(Commit::files);
+                .map(Commit::files)
+                .compose(RxUtils.filterAndMapToFirst(predicate));
     }
 
     @Override
@@ -10,13 +10,13 @@ import com.gh4a.activities.FileViewerActivity;
 import com.gh4a.utils.ApiHelpers;
 import com.gh4a.utils.FileUtils;
 import com.gh4a.utils.Optional;
-import com.gh4a.utils.RxUtils;
 import com.meisolsson.githubsdk.model.GitHubFile;
 import com.meisolsson.githubsdk.model.PositionalCommentBase;
 
 import java.util.List;
 
 import io.reactivex.Single;
+import io.reactivex.functions.Predicate;
 
 public abstract class DiffLoadTask<C extends PositionalCommentBase> extends UrlLoadTask {
     protected final String mRepoOwner;
@@ -33,9 +33,8 @@ public abstract class DiffLoadTask<C extends PositionalCommentBase> extends UrlL
 
     @Override
     protected Single<Optional<Intent>> getSingle() {
-        Single<Optional<GitHubFile>> fileSingle = getFiles()
-                .compose(RxUtils.filterAndMapToFirst(
-                        f -> ApiHelpers.md5(f.filename()).equalsIgnoreCase(mDiffId.fileHash)));
+        Single<Optional<GitHubFile>> fileSingle =
+                findFile(f -> ApiHelpers.md5(f.filename()).equalsIgnoreCase(mDiffId.fileHash));
         return Single.zip(getSha(), fileSingle, (sha, fileOpt) -> {
             final Intent intent;
             GitHubFile file = fileOpt.orNull();
@@ -51,7 +50,8 @@ public abstract class DiffLoadTask<C extends PositionalCommentBase> extends UrlL
         });
     }
 
-    protected abstract Single<List<GitHubFile>> getFiles();
+    // Implementations should stop loading further files as soon as a match is found
+    protected abstract Single<Optional<GitHubFile>> findFile(Predicate<GitHubFile> predicate);
     protected abstract Single<String> getSha();
     protected abstract Single<List<C>> getComments();
     protected abstract @NonNull Intent getLaunchIntent(String sha, @NonNull GitHubFile file,
@@ -11,6 +11,7 @@ import com.gh4a.ServiceFactory;
 import com.gh4a.activities.PullRequestActivity;
 import com.gh4a.activities.PullRequestDiffViewerActivity;
 import com.gh4a.utils.ApiHelpers;
+import com.gh4a.utils.Optional;
 import com.gh4a.utils.RxUtils;
 import com.meisolsson.githubsdk.model.GitHubFile;
 import com.meisolsson.githubsdk.model.ReviewComment;
@@ -20,6 +21,7 @@ import com.meisolsson.githubsdk.service.pull_request.PullRequestService;
 import java.util.List;
 
 import io.reactivex.Single;
+import io.reactivex.functions.Predicate;
 
 public class PullRequestDiffLoadTask extends DiffLoadTask<ReviewComment> {
     @VisibleForTesting
@@ -55,10 +57,11 @@ public class PullRequestDiffLoadTask extends DiffLoadTask<ReviewComment> {
     }
 
     @Override
-    protected Single<List<GitHubFile>> getFiles() {
+    protected Single<Optional<GitHubFile>> findFile(Predicate<GitHubFile> predicate) {
         final PullRequestService service = ServiceFactory.get(PullRequestService.class, false);
         return ApiHelpers.PageIterator
-                .toSingle(page -> service.getPullRequestFiles(mRepoOwner, mRepoName, mPullRequestNumber, page));
+                .first(page -> service.getPullRequestFiles(mRepoOwner, mRepoName, mPullRequestNumber, page),
+                        predicate);
     }
 
     @Override
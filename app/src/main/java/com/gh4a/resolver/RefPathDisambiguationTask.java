@@ -18,10 +18,11 @@ import com.meisolsson.githubsdk.model.Branch;
 import com.meisolsson.githubsdk.service.repositories.RepositoryBranchService;
 import com.meisolsson.githubsdk.service.repositories.RepositoryService;
 
-import java.util.List;
 import java.util.regex.Pattern;
 
+import io.reactivex.Observable;
 import io.reactivex.Single;
+import io.reactivex.schedulers.Schedulers;
 
 public class RefPathDisambiguationTask extends UrlLoadTask {
     private static final Pattern SHA1_PATTERN = Pattern.compile("[a-z0-9]{40}");
@@ -98,20 +99,17 @@ public class RefPathDisambiguationTask extends UrlLoadTask {
                 });
     }
 
-    private Single<Optional<Pair<String, String>>> matchBranch(Single<List<Branch>> input) {
-        return input.map(branches -> {
-            for (Branch branch : branches) {
-                if (TextUtils.equals(mRefAndPath, branch.name())) {
-                    return Optional.of(Pair.create(branch.name(), null));
-                } else {
-                    String nameWithSlash = branch.name() + "/";
-                    if (mRefAndPath.startsWith(nameWithSlash)) {
-                        return Optional.of(Pair.create(branch.name(),
-                                mRefAndPath.substring(nameWithSlash.length())));
-                    }
-                }
-            }
-            return Optional.absent();
+    private boolean matchesRef(Branch branch) {
+        return TextUtils.equals(mRefAndPath, branch.name())
+                || mRefAndPath.startsWith(branch.name() + "/");
+    }
+
+    private Optional<Pair<String, String>> toRefAndPath(Optional<Branch> branchOpt) {
+        return branchOpt.map(branch -> {
+            String name = branch.name();
+            String path = mRefAndPath.length() > name.length()
+                    ? mRefAndPath.substring(name.length() + 1) : null;
+            return Pair.create(name, path);
         });
     }
 
@@ -134,13 +132,32 @@ public class RefPathDisambiguationTask extends UrlLoadTask {
                 ServiceFactory.get(RepositoryBranchService.class, false);
         final RepositoryService repoService = ServiceFactory.get(RepositoryService.class, false);
 
-        // then look for matching branches
-        return ApiHelpers.PageIterator
-                .toSingle(page -> branchService.getBranches(mRepoOwner, mRepoName, page))
-                .compose(this::matchBranch)
-                // and tags after that
-                .flatMap(result -> result.orOptionalSingle(() -> ApiHelpers.PageIterator
-                        .toSingle(page -> repoService.getTags(mRepoOwner, mRepoName, page))
-                        .compose(this::matchBranch)));
+        // look for matching branches and tags in parallel, stopping as soon as we found one
+        Single<Optional<Pair<String, String>>> branchSingle = ApiHelpers.PageIterator
+                .first(page -> branchService.getBranches(mRepoOwner, mRepoName, page),
+                        this::matchesRef)
+                .map(this::toRefAndPath)
+                .subscribeOn(Schedulers.io())
+                .cache(); // single is used multiple times -> avoid refetching data
+        Single<Optional<Pair<String, String>>> tagSingle = ApiHelpers.PageIterator
+                .first(page -> repoService.getTags(mRepoOwner, mRepoName, page),
+                        this::matchesRef)
+                .map(this::toRefAndPath)
+                .subscribeOn(Schedulers.io());
+
+        Observable<Optional<Pair<String, String>>> branchMatch = branchSingle
+                .toObservable()
+                .filter(Optional::isPresent);
+        // branches take precedence over tags, so a tag match is only used if there's no branch
+        Observable<Optional<Pair<String, String>>> tagMatch = tagSingle
+                .toObservable()
+                .filter(Optional::isPresent)
+                .concatMap(tagResult -> branchSingle
+                        .map(branchResult -> branchResult.isPresent() ? branchResult : tagResult)
+                        .toObservable());
+
+        // taking the first result cancels the search that is still running
+        return Observable.merge(branchMatch, tagMatch)
+                .first(Optional.absent());
     }
 }
@@ -33,9 +33,12 @@ import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.List;
 
+import io.reactivex.BackpressureStrategy;
+import io.reactivex.Flowable;
 import io.reactivex.Observable;
 import io.reactivex.Single;
 import io.reactivex.functions.Predicate;
+import io.reactivex.schedulers.Schedulers;
 import io.reactivex.subjects.BehaviorSubject;
 import retrofit2.Response;
 
@@ -342,9 +345,74 @@ public class ApiHelpers {
             Single<Response<Page<T>>> getPage(long page);
         }
 
+        // Upper bound for the number of page requests in flight at the same time when fanning
+        // out; kept low to stay clear of GitHub's secondary rate limits
+        public static final int DEFAULT_MAX_CONCURRENT_PAGES = 4;
+
         public static <T> Single<List<T>> toSingle(PageProducer<T> producer) {
+            return toSingle(producer, DEFAULT_MAX_CONCURRENT_PAGES);
+        }
+
+        public static <T> Single<List<T>> toSingle(PageProducer<T> producer, int maxConcurrency) {
+            return loadPages(producer, maxConcurrency)
+                    .toList()
+                    .map(lists -> {
+                        List<T> result = new ArrayList<>();
+                        for (List<T> l : lists) {
+                            result.addAll(l);
+                        }
+                        return result;
+                    });
+        }
+
+        /**
+         * Like {@link #toSingle(PageProducer)}, but emits the items of each page as soon as that
+         * page (and all pages before it) has been loaded, instead of waiting for the whole list.
+         */
+        public static <T> Flowable<List<T>> toFlowable(PageProducer<T> producer) {
+            return toFlowable(producer, DEFAULT_MAX_CONCURRENT_PAGES);
+        }
+
+        public static <T> Flowable<List<T>> toFlowable(PageProducer<T> producer,
+                int maxConcurrency) {
+            // Consumers are expected to merely collect the pages, so buffering the
+            // (bounded amount of) pages not yet consumed is fine
+            return loadPages(producer, maxConcurrency)
+                    .toFlowable(BackpressureStrategy.BUFFER);
+        }
+
+        private static <T> Observable<List<T>> loadPages(PageProducer<T> producer,
+                int maxConcurrency) {
+            return producer.getPage(1)
+                    .toObservable()
+                    .compose(PageIterator::evaluateError)
+                    .concatMap(firstPage -> {
+                        Observable<List<T>> first = Observable.just(firstPage.items());
+                        Integer next = firstPage.next();
+                        Integer last = firstPage.last();
+                        if (next == null) {
+                            return first;
+                        }
+                        if (last == null || last < next || maxConcurrency <= 1) {
+                            // Page count unknown, so we can only follow the 'next' links
+                            return first.concatWith(loadPagesSerially(producer, next));
+                        }
+                        // All remaining pages are known: fetch them concurrently, but emit
+                        // them in page order
+                        Observable<List<T>> remaining = Observable.rangeLong(next, last - next + 1)
+                                .concatMapEager(page -> producer.getPage(page)
+                                        .subscribeOn(Schedulers.io())
+                                        .toObservable()
+                                        .compose(PageIterator::evaluateError)
+                                        .map(Page::items), maxConcurrency, 1);
+                        return first.concatWith(remaining);
+                    });
+        }
+
+        private static <T> Observable<List<T>> loadPagesSerially(PageProducer<T> producer,
+                int startPage) {
             BehaviorSubject<Optional<Integer>> pageControl =
-                    BehaviorSubject.createDefault(Optional.of(1));
+                    BehaviorSubject.createDefault(Optional.of(startPage));
             return pageControl
                     .concatMap(page -> {
                         if (!page.isPresent()) {
@@ -355,14 +423,6 @@ public class ApiHelpers {
                                 .compose(PageIterator::evaluateError)
                                 .doOnNext(resultPage -> pageControl.onNext(Optional.ofWithNull(resultPage.next())))
                                 .map(responsePage -> responsePage.items());
-                    })
-                    .toList()
-                    .map(lists -> {
-                        List<T> result = new ArrayList<>();
-                        for (List<T> l : lists) {
-                            result.addAll(l);
-                        }
-                        return result;
                     });
         }
 
@@ -392,6 +452,22 @@ public class ApiHelpers {
                     .first(Optional.absent());
         }
 
+        /**
+         * Determines the total number of items of a paged list without loading the list.
+         * For this to work, the producer must use a service with a page size of 1
+         * (see {@link com.gh4a.ServiceFactory#get(Class, boolean, String, String, Integer)}),
+         * as the count then equals the number of the last page.
+         */
+        public static <T> Single<Integer> count(PageProducer<T> producer) {
+            return producer.getPage(1)
+                    .map(ApiHelpers::throwOnFailure)
+                    .map(page -> {
+                        // The last page link is missing if there's only a single page
+                        Integer last = page.last();
+                        return last != null ? last : page.items().size();
+                    });
+        }
+
         private static <T> Observable<Page<T>> evaluateError(Observable<Response<Page<T>>> upstream) {
             return upstream.map(response -> {
                 throwOnFailure(response);
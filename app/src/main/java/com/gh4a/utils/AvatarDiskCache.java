@@ -0,0 +1,150 @@
+package com.gh4a.utils;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Stores avatars on disk after they have been scaled and rounded, so they can be shown
+ * after a process restart without fetching and decoding them again. The raw pixel data is
+ * stored, which makes reading a file a plain memory mapped copy.
+ *
+ * Only the size bookkeeping is synchronized. Entries are written to a temporary file and
+ * renamed, so readers never see partial entries and don't need to wait for writers.
+ */
+class AvatarDiskCache {
+    private static final String TAG = "AvatarDiskCache";
+    private static final String DIR_NAME = "avatars";
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final int HEADER_SIZE = 8; /* width and height */
+
+    private final File mDir;
+    private final long mMaxSize;
+    // Guarded by this
+    private long mSize = -1;
+
+    AvatarDiskCache(Context context, long maxSize) {
+        mDir = new File(context.getCacheDir(), DIR_NAME);
+        mMaxSize = maxSize;
+    }
+
+    public Bitmap get(long userId, String url) {
+        File file = getFile(userId, url);
+        if (!file.exists()) {
+            return null;
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+                FileChannel channel = raf.getChannel()) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            int width = buffer.getInt();
+            int height = buffer.getInt();
+            if (width <= 0 || height <= 0
+                    || buffer.remaining() != (long) width * height * 4) {
+                throw new IOException("Size mismatch");
+            }
+            Bitmap bitmap = BitmapPool.get(width, height, Bitmap.Config.ARGB_8888);
+            bitmap.copyPixelsFromBuffer(buffer);
+            // Keep recently used avatars from being trimmed
+            file.setLastModified(System.currentTimeMillis());
+            return bitmap;
+        } catch (IOException | IllegalArgumentException e) {
+            Log.w(TAG, "Could not read cached avatar " + file, e);
+            deleteFile(file);
+            return null;
+        }
+    }
+
+    public void put(long userId, String url, Bitmap bitmap) {
+        if (bitmap.getConfig() != Bitmap.Config.ARGB_8888 || (!mDir.exists() && !mDir.mkdirs())) {
+            return;
+        }
+
+        File file = getFile(userId, url);
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + bitmap.getByteCount());
+        buffer.putInt(bitmap.getWidth());
+        buffer.putInt(bitmap.getHeight());
+        bitmap.copyPixelsToBuffer(buffer);
+
+        File tempFile = null;
+        try {
+            tempFile = File.createTempFile(file.getName(), TEMP_SUFFIX, mDir);
+            try (FileOutputStream out = new FileOutputStream(tempFile)) {
+                out.write(buffer.array(), 0, buffer.position());
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "Could not write cached avatar " + file, e);
+            if (tempFile != null) {
+                tempFile.delete();
+            }
+            return;
+        }
+
+        synchronized (this) {
+            ensureSizeKnown();
+            deleteFile(file);
+            if (tempFile.renameTo(file)) {
+                mSize += file.length();
+                trimToSize();
+            } else {
+                tempFile.delete();
+            }
+        }
+    }
+
+    private File getFile(long userId, String url) {
+        // The URL changes when the user changes their avatar, so include it in the file name
+        return new File(mDir, userId + "-" + Integer.toHexString(url.hashCode()));
+    }
+
+    private synchronized void deleteFile(File file) {
+        long length = file.length();
+        if (file.delete() && mSize >= 0) {
+            mSize -= length;
+        }
+    }
+
+    private void ensureSizeKnown() {
+        if (mSize >= 0) {
+            return;
+        }
+        mSize = 0;
+        File[] files = listEntries();
+        if (files != null) {
+            for (File file : files) {
+                mSize += file.length();
+            }
+        }
+    }
+
+    private void trimToSize() {
+        if (mSize <= mMaxSize) {
+            return;
+        }
+        File[] files = listEntries();
+        if (files == null) {
+            return;
+        }
+        // Reads touch files without holding the lock
+        FileUtils.sortByLastModified(files, false);
+        // Trim to 90% of the budget, so we don't need to do that on every write
+        for (File file : files) {
+            if (mSize <= mMaxSize * 9 / 10) {
+                break;
+            }
+            deleteFile(file);
+        }
+    }
+
+    private File[] listEntries() {
+        // Leave alone files other callers are still writing
+        return mDir.listFiles(file -> !file.getName().endsWith(TEMP_SUFFIX));
+    }
+}
@@ -2,36 +2,44 @@ package com.gh4a.utils;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import android.content.Context;
 import android.content.res.Resources;
 import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
+import android.graphics.BitmapShader;
 import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.ColorFilter;
 import android.graphics.Paint;
+import android.graphics.Matrix;
 import android.graphics.Rect;
+import android.graphics.RectF;
+import android.graphics.Shader;
+import android.graphics.drawable.BitmapDrawable;
 import android.graphics.drawable.Drawable;
 import android.graphics.drawable.TransitionDrawable;
 import android.net.Uri;
-import android.os.Build;
 import android.os.Handler;
-import android.os.HandlerThread;
 import android.os.Looper;
 import android.os.Message;
+import android.os.Process;
 import androidx.annotation.ColorInt;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
-import androidx.core.graphics.drawable.RoundedBitmapDrawable;
-import androidx.core.graphics.drawable.RoundedBitmapDrawableFactory;
-import androidx.collection.LongSparseArray;
 import androidx.collection.LruCache;
 import android.text.TextUtils;
 import android.util.Log;
 import android.view.MenuItem;
 import android.widget.ImageView;
 
+import com.gh4a.R;
 import com.gh4a.ServiceFactory;
 import com.meisolsson.githubsdk.model.User;
 
@@ -41,53 +49,93 @@ public class AvatarHandler {
     private static final String TAG = "GravatarHandler";
 
     private static final int MAX_CACHED_IMAGE_SIZE = 60; /* dp - maximum gravatar view size used */
+    private static final int WORKER_COUNT = 3;
+    private static final int WORKER_KEEP_ALIVE_SECONDS = 3;
 
     private static LruCache<Long, Bitmap> sCache;
-    private static int sNextRequestId = 1;
+    private static AvatarDiskCache sDiskCache;
+    private static int sMaxImageSizePx = -1;
+
+    // Requests that are queued or running, only accessed from the main thread
+    private static final HashMap<Long, Request> sRequestsByUserId = new HashMap<>();
+    private static final HashMap<ViewDelegate, Request> sRequestsByView = new HashMap<>();
+    // Requests bound later are for views that became visible later, so they're loaded first
+    private static long sNextRequestPriority = 1;
+
+    private static class Request implements Runnable, Comparable<Request> {
+        final long id;
+        final String url;
+        final ArrayList<ViewDelegate> views = new ArrayList<>();
+        long priority;
+        Bitmap result;
+
+        Request(long id, String url) {
+            this.id = id;
+            this.url = url;
+        }
 
-    private static class Request {
-        long id;
-        String url;
-        ArrayList<ViewDelegate> views;
+        @Override
+        public void run() {
+            try {
+                result = loadBitmap(id, url);
+            } catch (IOException e) {
+                Log.e(TAG, "Couldn't fetch gravatar from URL " + url, e);
+            }
+            sHandler.obtainMessage(MSG_LOADED, this).sendToTarget();
+        }
+
+        @Override
+        public int compareTo(@NonNull Request other) {
+            return Long.compare(other.priority, priority);
+        }
     }
-    private static final LongSparseArray<Request> sRequests = new LongSparseArray<>();
-    private static int sMaxImageSizePx = -1;
 
-    private static final int MSG_LOAD = 1;
-    private static final int MSG_LOADED = 2;
-    private static final int MSG_DESTROY = 3;
+    private static final int MSG_LOADED = 1;
+
+    private static final ThreadPoolExecutor sExecutor = new ThreadPoolExecutor(
+            WORKER_COUNT, WORKER_COUNT, WORKER_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+            new PriorityBlockingQueue<>(), new ThreadFactory() {
+        private final AtomicInteger mCount = new AtomicInteger(1);
+
+        @Override
+        public Thread newThread(@NonNull Runnable r) {
+            return new Thread(() -> {
+                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                r.run();
+            }, "GravatarLoader #" + mCount.getAndIncrement());
+        }
+    });
 
-    private static HandlerThread sWorkerThread = null;
-    private static Handler sWorkerHandler = null;
+    static {
+        sExecutor.allowCoreThreadTimeOut(true);
+    }
 
     private static final Handler sHandler = new Handler(Looper.getMainLooper()) {
         @Override
         public void handleMessage(Message msg) {
-            switch (msg.what) {
-                case MSG_LOADED:
-                    processResult(msg.arg1, (Bitmap) msg.obj);
-                    if (sRequests.size() == 0) {
-                        sendEmptyMessageDelayed(MSG_DESTROY, 3000);
-                    }
-                    break;
-                case MSG_DESTROY:
-                    shutdownWorker();
-                    break;
+            if (msg.what == MSG_LOADED) {
+                processResult((Request) msg.obj);
             }
         }
 
-        private void processResult(long requestId, Bitmap bitmap) {
-            final Request request = sRequests.get(requestId);
-            if (request != null && bitmap != null) {
+        private void processResult(Request request) {
+            if (request.result != null) {
                 synchronized (AvatarHandler.class) {
-                    sCache.put(request.id, bitmap);
+                    sCache.put(request.id, request.result);
                 }
-
-                for (ViewDelegate view : request.views) {
-                    applyAvatarToView(view, bitmap);
+            }
+            // The request might have been cancelled while it was running; in that case its
+            // result still made it into the cache, but there are no views to update
+            if (sRequestsByUserId.get(request.id) != request) {
+                return;
+            }
+            sRequestsByUserId.remove(request.id);
+            for (ViewDelegate view : request.views) {
+                sRequestsByView.remove(view);
+                if (request.result != null) {
+                    applyAvatarToView(view, request.result);
                 }
             }
-            sRequests.remove(requestId);
         }
     };
 
@@ -118,7 +166,7 @@ public class AvatarHandler {
             return cachedBitmap;
         }
         try {
-            Bitmap bitmap = fetchBitmap(makeUrl(user.avatarUrl(), user.id()));
+            Bitmap bitmap = loadBitmap(user.id(), makeUrl(user.avatarUrl(), user.id()));
             if (bitmap != null) {
                 synchronized (AvatarHandler.class) {
                     sCache.put(user.id(), bitmap);
@@ -141,6 +189,12 @@ public class AvatarHandler {
 
     private static void assignAvatarInternal(ViewDelegate view,
             String userName, long userId, String url) {
+        Request oldRequest = sRequestsByView.get(view);
+        if (oldRequest != null && oldRequest.id == userId) {
+            // Rebound to the same user while loading, just make sure it's loaded soon
+            bumpPriority(oldRequest);
+            return;
+        }
         removeOldRequest(view);
 
         Bitmap bitmap = loadBitmapFromCache(view.getContext(), userId);
@@ -154,28 +208,43 @@ public class AvatarHandler {
             return;
         }
 
-        Request request = getRequestForId(userId);
+        Request request = sRequestsByUserId.get(userId);
         if (request != null) {
             request.views.add(view);
+            sRequestsByView.put(view, request);
+            bumpPriority(request);
             return;
         }
 
-        int requestId = sNextRequestId++;
-        request = new Request();
-        request.id = userId;
-        request.url = makeUrl(url, userId);
-        request.views = new ArrayList<>();
+        request = new Request(userId, makeUrl(url, userId));
         request.views.add(view);
-        sRequests.put(requestId, request);
+        request.priority = sNextRequestPriority++;
+        sRequestsByUserId.put(userId, request);
+        sRequestsByView.put(view, request);
+        sExecutor.execute(request);
+    }
 
-        sHandler.removeMessages(MSG_DESTROY);
-        if (sWorkerThread == null) {
-            sWorkerThread = new HandlerThread("GravatarLoader");
-            sWorkerThread.start();
-            sWorkerHandler = new WorkerHandler(sWorkerThread.getLooper());
+    private static void bumpPriority(Request request) {
+        // Only requests still waiting in the queue can be reordered
+        if (sExecutor.remove(request)) {
+            request.priority = sNextRequestPriority++;
+            sExecutor.execute(request);
+        }
+    }
+
+    private static void removeOldRequest(ViewDelegate view) {
+        Request request = sRequestsByView.remove(view);
+        if (request == null) {
+            return;
+        }
+        request.views.remove(view);
+        if (request.views.isEmpty()) {
+            // The view was recycled for another user before the avatar arrived, so there's
+            // no point in loading it anymore if that didn't start yet
+            if (sExecutor.remove(request)) {
+                sRequestsByUserId.remove(request.id);
+            }
         }
-        Message msg = sWorkerHandler.obtainMessage(MSG_LOAD, requestId, 0, request.url);
-        msg.sendToTarget();
     }
 
     private static void initialize(Context context) {
@@ -183,13 +252,9 @@ public class AvatarHandler {
         // Use 10% of the available memory or 1MB for the cache, whatever is larger
         final int limit = Math.max(maxMemory / 10, 1024);
 
+        // Evicted avatars are neither recycled nor pooled, as views bound before the
+        // eviction may still draw them; they are left to the garbage collector instead
         sCache = new LruCache<Long, Bitmap>(limit) {
-            @Override
-            protected void entryRemoved(boolean evicted, Long key, Bitmap oldValue, Bitmap newValue) {
-                super.entryRemoved(evicted, key, oldValue, newValue);
-                oldValue.recycle();
-            }
-
             @Override
             protected int sizeOf(Long key, Bitmap value) {
                 final long sizeInBytes = value.getAllocationByteCount();
@@ -198,6 +263,8 @@ public class AvatarHandler {
         };
 
         Resources res = context.getResources();
+        long diskCacheSize = res.getInteger(R.integer.avatar_disk_cache_size_mb) * 1024L * 1024L;
+        sDiskCache = new AvatarDiskCache(context.getApplicationContext(), diskCacheSize);
         sMaxImageSizePx = Math.round(res.getDisplayMetrics().density * MAX_CACHED_IMAGE_SIZE);
     }
 
@@ -212,9 +279,8 @@ public class AvatarHandler {
 
     private static void applyAvatarToView(ViewDelegate view, Bitmap avatar) {
         Resources res = view.getContext().getResources();
-        RoundedBitmapDrawable d = RoundedBitmapDrawableFactory.create(res, avatar);
-        d.setCornerRadius(Math.max(avatar.getWidth() / 2, avatar.getHeight() / 2));
-        d.setAntiAlias(true);
+        // Avatars are already rounded when loading them
+        BitmapDrawable d = new BitmapDrawable(res, avatar);
 
         Drawable old = view.getDrawable();
         if (old instanceof DefaultAvatarDrawable) {
@@ -227,31 +293,15 @@ public class AvatarHandler {
         }
     }
 
-    private static Request getRequestForId(long id) {
-        int count = sRequests.size();
-        for (int i = 0; i < count; i++) {
-            Request request = sRequests.valueAt(i);
-            if (request.id == id) {
-                return request;
-            }
-        }
-        return null;
-    }
-
-    private static void removeOldRequest(ViewDelegate view) {
-        int count = sRequests.size();
-        for (int i = 0; i < count; i++) {
-            Request request = sRequests.valueAt(i);
-            if (request.views.remove(view)) {
-                if (request.views.isEmpty()) {
-                    if (sWorkerHandler != null) {
-                        sWorkerHandler.removeMessages(MSG_LOAD, request.url);
-                    }
-                    sRequests.removeAt(i);
-                }
-                return;
+    private static Bitmap loadBitmap(long userId, String url) throws IOException {
+        Bitmap bitmap = sDiskCache.get(userId, url);
+        if (bitmap == null) {
+            bitmap = fetchBitmap(url);
+            if (bitmap != null) {
+                sDiskCache.put(userId, url, bitmap);
             }
         }
+        return bitmap;
     }
 
     private static Bitmap fetchBitmap(String url) throws IOException {
@@ -280,55 +330,33 @@ public class AvatarHandler {
         final int heightRatio = options.outHeight / sMaxImageSizePx;
         options.inSampleSize = Math.min(heightRatio, widthRatio);
 
-        Bitmap unscaled = BitmapFactory.decodeByteArray(data, 0, data.length, options);
+        Bitmap unscaled = BitmapPool.decodeByteArray(data, options);
         if (unscaled == null) {
             return null;
         }
 
-        // We'll scale the image to the desired density
-        unscaled.setDensity(0);
-
         float widthScale = (float) sMaxImageSizePx / (float) unscaled.getWidth();
         float heightScale = (float) sMaxImageSizePx / (float) unscaled.getHeight();
         float scaleFactor = Math.min(1, Math.min(widthScale, heightScale));
 
-        Bitmap scaled = Bitmap.createScaledBitmap(unscaled,
-                (int) (scaleFactor * unscaled.getWidth()),
-                (int) (scaleFactor * unscaled.getHeight()), true);
-        if (scaled != unscaled) {
-            unscaled.recycle();
-        }
-        return scaled;
-    }
-
-    private static void shutdownWorker() {
-        if (sWorkerThread != null) {
-            sWorkerThread.getLooper().quit();
-            sWorkerHandler = null;
-            sWorkerThread = null;
-        }
-    }
-
-    private static class WorkerHandler extends Handler {
-        public WorkerHandler(Looper looper) {
-            super(looper);
-        }
-
-        @Override
-        public void handleMessage(Message msg) {
-            switch (msg.what) {
-                case MSG_LOAD:
-                    String url = (String) msg.obj;
-                    Bitmap bitmap = null;
-                    try {
-                        bitmap = fetchBitmap(url);
-                    } catch (IOException e) {
-                        Log.e(TAG, "Couldn't fetch gravatar from URL " + url, e);
-                    }
-                    sHandler.obtainMessage(MSG_LOADED, msg.arg1, 0, bitmap).sendToTarget();
-                    break;
-            }
-        }
+        // Scale and round the image in one go, so that neither the in-memory nor the
+        // on-disk cache need to do that again
+        Bitmap rounded = BitmapPool.get(
+                Math.max(1, (int) (scaleFactor * unscaled.getWidth())),
+                Math.max(1, (int) (scaleFactor * unscaled.getHeight())),
+                Bitmap.Config.ARGB_8888);
+        Matrix matrix = new Matrix();
+        matrix.setScale(scaleFactor, scaleFactor);
+        BitmapShader shader = new BitmapShader(unscaled,
+                Shader.TileMode.CLAMP, Shader.TileMode.CLAMP);
+        shader.setLocalMatrix(matrix);
+
+        Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG | Paint.FILTER_BITMAP_FLAG);
+        paint.setShader(shader);
+        new Canvas(rounded).drawOval(
+                new RectF(0, 0, rounded.getWidth(), rounded.getHeight()), paint);
+        BitmapPool.put(unscaled);
+        return rounded;
     }
 
     public static class DefaultAvatarDrawable extends Drawable {
@@ -461,6 +489,10 @@ public class AvatarHandler {
         public boolean equals(Object obj) {
             return obj instanceof ImageViewDelegate && ((ImageViewDelegate) obj).mView == mView;
         }
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(mView);
+        }
     }
 
     private static class MenuItemDelegate implements ViewDelegate {
@@ -486,5 +518,9 @@ public class AvatarHandler {
         public boolean equals(Object obj) {
             return obj instanceof MenuItemDelegate && ((MenuItemDelegate) obj).mItem == mItem;
         }
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(mItem);
+        }
     }
 }
\ No newline at end of file
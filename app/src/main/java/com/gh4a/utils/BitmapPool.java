@@ -0,0 +1,219 @@
+package com.gh4a.utils;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Color;
+import android.util.Log;
+
+import com.gh4a.BuildConfig;
+
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Keeps bitmaps that are no longer displayed around for reuse by later decodes, so that
+ * scrolling through avatars and comment images doesn't allocate a new bitmap for every image.
+ * Only bitmaps that are known to be unreferenced may be put here, as their contents are
+ * overwritten by the next decode. Bitmaps are bucketed by their allocation size; a pooled bitmap is reused for any request
+ * it is large enough for, but not for ones that are a lot smaller.
+ */
+class BitmapPool {
+    private static final String TAG = "BitmapPool";
+    // Don't use bitmaps for requests that would only use a quarter of their memory
+    private static final int MAX_SIZE_RATIO = 4;
+    private static final int STATS_LOG_INTERVAL = 50;
+
+    private static final long MAX_SIZE =
+            Math.max(Runtime.getRuntime().maxMemory() / 20, 2 * 1024 * 1024);
+
+    private static final TreeMap<Integer, ArrayList<Bitmap>> sBuckets = new TreeMap<>();
+    // Insertion order, used for evicting the least recently pooled bitmaps first
+    private static final ArrayDeque<Bitmap> sOrder = new ArrayDeque<>();
+    private static long sSize;
+
+    // Only maintained in debug builds
+    private static int sAllocations;
+    private static int sReuses;
+
+    private BitmapPool() {
+    }
+
+    /**
+     * Returns a mutable, transparent bitmap of the given size, taken from the pool if possible.
+     */
+    public static Bitmap get(int width, int height, Bitmap.Config config) {
+        Bitmap bitmap = take(width * height * getBytesPerPixel(config));
+        if (bitmap != null) {
+            try {
+                bitmap.reconfigure(width, height, config);
+                bitmap.eraseColor(Color.TRANSPARENT);
+                countAllocation(true);
+                return bitmap;
+            } catch (IllegalArgumentException e) {
+                bitmap.recycle();
+            }
+        }
+        countAllocation(false);
+        return Bitmap.createBitmap(width, height, config);
+    }
+
+    /**
+     * Decodes an image with a pooled bitmap as target, if one is available. The options
+     * must be the ones used for decoding the bounds, with inSampleSize set as desired.
+     */
+    public static Bitmap decodeByteArray(byte[] data, BitmapFactory.Options options) {
+        options.inJustDecodeBounds = false;
+        options.inMutable = true;
+        Bitmap candidate = takeForDecode(options);
+        if (candidate != null) {
+            options.inBitmap = candidate;
+            try {
+                Bitmap bitmap = BitmapFactory.decodeByteArray(data, 0, data.length, options);
+                if (bitmap == null) {
+                    put(candidate);
+                } else {
+                    countAllocation(true);
+                }
+                return bitmap;
+            } catch (IllegalArgumentException e) {
+                // The decoder chose a different size than we expected, fall back to a new bitmap
+                options.inBitmap = null;
+                put(candidate);
+            }
+        }
+        countAllocation(false);
+        return BitmapFactory.decodeByteArray(data, 0, data.length, options);
+    }
+
+    /**
+     * Like {@link #decodeByteArray(byte[], BitmapFactory.Options)}, but for streams. As streams
+     * can't be rewound, this can't fall back to a new bitmap by itself if the pooled one
+     * turns out to be unsuitable (e.g. due to the decoder rounding the sampled size
+     * differently); callers need to decode from a new stream with usePool set to false then.
+     *
+     * @throws IllegalArgumentException if the decoder rejected the pooled bitmap
+     */
+    public static Bitmap decodeStream(InputStream is, BitmapFactory.Options options,
+            boolean usePool) {
+        options.inJustDecodeBounds = false;
+        options.inMutable = true;
+        Bitmap candidate = usePool ? takeForDecode(options) : null;
+        options.inBitmap = candidate;
+        try {
+            Bitmap bitmap = BitmapFactory.decodeStream(is, null, options);
+            if (bitmap == null) {
+                put(candidate);
+            } else {
+                countAllocation(candidate != null);
+            }
+            return bitmap;
+        } catch (IllegalArgumentException e) {
+            options.inBitmap = null;
+            put(candidate);
+            throw e;
+        }
+    }
+
+    /**
+     * Hands a bitmap that isn't used anymore to the pool. The caller must not access
+     * the bitmap afterwards.
+     */
+    public static void put(Bitmap bitmap) {
+        if (bitmap == null || bitmap.isRecycled()) {
+            return;
+        }
+        int size = bitmap.getAllocationByteCount();
+        if (!bitmap.isMutable() || getBytesPerPixel(bitmap.getConfig()) == 0 || size > MAX_SIZE) {
+            bitmap.recycle();
+            return;
+        }
+
+        synchronized (BitmapPool.class) {
+            ArrayList<Bitmap> bucket = sBuckets.get(size);
+            if (bucket == null) {
+                bucket = new ArrayList<>();
+                sBuckets.put(size, bucket);
+            }
+            bucket.add(bitmap);
+            sOrder.addLast(bitmap);
+            sSize += size;
+
+            while (sSize > MAX_SIZE) {
+                Bitmap oldest = sOrder.removeFirst();
+                removeFromBucket(oldest);
+                oldest.recycle();
+            }
+        }
+    }
+
+    private static Bitmap takeForDecode(BitmapFactory.Options options) {
+        if (options.outWidth <= 0 || options.outHeight <= 0) {
+            return null;
+        }
+        int sampleSize = Math.max(1, options.inSampleSize);
+        // Decoders round up the sampled size
+        int width = (options.outWidth + sampleSize - 1) / sampleSize;
+        int height = (options.outHeight + sampleSize - 1) / sampleSize;
+        Bitmap.Config config = options.inPreferredConfig != null
+                ? options.inPreferredConfig : Bitmap.Config.ARGB_8888;
+        return take(width * height * getBytesPerPixel(config));
+    }
+
+    private static synchronized Bitmap take(int size) {
+        if (size <= 0) {
+            return null;
+        }
+        Map.Entry<Integer, ArrayList<Bitmap>> entry = sBuckets.ceilingEntry(size);
+        if (entry == null || entry.getKey() > size * MAX_SIZE_RATIO) {
+            return null;
+        }
+        ArrayList<Bitmap> bucket = entry.getValue();
+        Bitmap bitmap = bucket.remove(bucket.size() - 1);
+        if (bucket.isEmpty()) {
+            sBuckets.remove(entry.getKey());
+        }
+        sOrder.remove(bitmap);
+        sSize -= entry.getKey();
+        return bitmap;
+    }
+
+    private static void removeFromBucket(Bitmap bitmap) {
+        int size = bitmap.getAllocationByteCount();
+        ArrayList<Bitmap> bucket = sBuckets.get(size);
+        if (bucket != null && bucket.remove(bitmap)) {
+            if (bucket.isEmpty()) {
+                sBuckets.remove(size);
+            }
+            sSize -= size;
+        }
+    }
+
+    private static int getBytesPerPixel(Bitmap.Config config) {
+        if (config == Bitmap.Config.ARGB_8888) {
+            return 4;
+        } else if (config == Bitmap.Config.RGB_565) {
+            return 2;
+        }
+        return 0;
+    }
+
+    private static void countAllocation(boolean reused) {
+        if (!BuildConfig.DEBUG) {
+            return;
+        }
+        synchronized (BitmapPool.class) {
+            if (reused) {
+                sReuses++;
+            } else {
+                sAllocations++;
+            }
+            if ((sReuses + sAllocations) % STATS_LOG_INTERVAL == 0) {
+                Log.d(TAG, "Bitmaps reused: " + sReuses + ", allocated: " + sAllocations
+                        + ", pooled bytes: " + sSize);
+            }
+        }
+    }
+}
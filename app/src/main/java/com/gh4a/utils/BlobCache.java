@@ -0,0 +1,170 @@
+package com.gh4a.utils;
+
+import android.content.Context;
+import android.util.Log;
+
+import com.gh4a.Gh4Application;
+import com.gh4a.R;
+import com.gh4a.ServiceFactory;
+
+import java.io.File;
+import java.io.IOException;
+
+import okhttp3.HttpUrl;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.BufferedSink;
+import okio.BufferedSource;
+import okio.Okio;
+
+/**
+ * Stores the contents of repository files on disk, so binary files like images can be shown,
+ * printed and saved without holding them in memory. The raw contents are streamed into the
+ * file as they arrive, so they are never base64 encoded or buffered as a whole.
+ *
+ * Stored files are revalidated via their ETag on every fetch, and only used without that
+ * if the network isn't reachable.
+ */
+public class BlobCache {
+    private static final String TAG = "BlobCache";
+    private static final String DIR_NAME = "blobs";
+    private static final String ETAG_SUFFIX = ".etag";
+
+    private BlobCache() {
+    }
+
+    /**
+     * Returns the file holding the current contents of the given repository file, fetching
+     * them if needed. Does network I/O, so must not be called on the main thread.
+     */
+    public static File fetch(Context context, String repoOwner, String repoName, String ref,
+            String path, boolean bypassCache) throws IOException {
+        Gh4Application app = Gh4Application.get();
+        File dir = new File(context.getCacheDir(), DIR_NAME);
+        // Include the account, as the contents of private repos may only be visible to it
+        String key = app.getAuthLogin() + "/" + repoOwner + "/" + repoName
+                + "/" + ref + "/" + path;
+        File file = new File(dir, ApiHelpers.md5(key));
+        File etagFile = new File(dir, file.getName() + ETAG_SUFFIX);
+        String etag = !bypassCache && file.exists() ? readETag(etagFile) : null;
+
+        HttpUrl.Builder urlBuilder = ServiceFactory.newApiUrlBuilder()
+                .addPathSegment("repos")
+                .addPathSegment(repoOwner)
+                .addPathSegment(repoName)
+                .addPathSegment("contents")
+                .addPathSegments(path);
+        if (ref != null) {
+            urlBuilder.addQueryParameter("ref", ref);
+        }
+        Request.Builder requestBuilder = ServiceFactory.newApiRequestBuilder(urlBuilder.build())
+                .header("Accept", "application/vnd.github.v3.raw");
+        if (etag != null) {
+            requestBuilder.header("If-None-Match", etag);
+        }
+
+        final Response response;
+        try {
+            response = ServiceFactory.getDownloadHttpClient()
+                    .newCall(requestBuilder.build())
+                    .execute();
+        } catch (IOException e) {
+            // Keep showing what we have if we're offline
+            if (file.exists()) {
+                markUsed(file);
+                return file;
+            }
+            throw e;
+        }
+
+        try (ResponseBody body = response.body()) {
+            if (response.code() == 304 && etag != null) {
+                markUsed(file);
+                return file;
+            }
+            if (!response.isSuccessful() || body == null) {
+                throw new IOException("Fetching " + path + " failed with " + response.code());
+            }
+            long maxSize = context.getResources().getInteger(R.integer.blob_cache_size_mb)
+                    * 1024L * 1024L;
+            writeFile(dir, file, body.source(), maxSize);
+            writeETag(etagFile, response.header("ETag"));
+        }
+        return file;
+    }
+
+    private static void writeFile(File dir, File file, BufferedSource source, long maxSize)
+            throws IOException {
+        if (!dir.exists() && !dir.mkdirs()) {
+            throw new IOException("Could not create " + dir);
+        }
+        File tempFile = File.createTempFile(file.getName(), ".tmp", dir);
+        try (BufferedSink sink = Okio.buffer(Okio.sink(tempFile))) {
+            sink.writeAll(source);
+        } catch (IOException e) {
+            tempFile.delete();
+            throw e;
+        }
+        synchronized (BlobCache.class) {
+            file.delete();
+            if (!tempFile.renameTo(file)) {
+                tempFile.delete();
+                throw new IOException("Could not write " + file);
+            }
+            trimToSize(dir, file, maxSize);
+        }
+    }
+
+    private static String readETag(File etagFile) {
+        if (!etagFile.exists()) {
+            return null;
+        }
+        try (BufferedSource source = Okio.buffer(Okio.source(etagFile))) {
+            return source.readUtf8();
+        } catch (IOException e) {
+            Log.w(TAG, "Could not read " + etagFile, e);
+            return null;
+        }
+    }
+
+    private static void writeETag(File etagFile, String etag) {
+        if (etag == null) {
+            etagFile.delete();
+            return;
+        }
+        try (BufferedSink sink = Okio.buffer(Okio.sink(etagFile))) {
+            sink.writeUtf8(etag);
+        } catch (IOException e) {
+            Log.w(TAG, "Could not write " + etagFile, e);
+            etagFile.delete();
+        }
+    }
+
+    private static void markUsed(File file) {
+        // Keep recently viewed files from being trimmed
+        file.setLastModified(System.currentTimeMillis());
+    }
+
+    private static void trimToSize(File dir, File keptFile, long maxSize) {
+        // Leave alone ETags, and files other callers are still writing
+        File[] files = dir.listFiles(file -> !file.getName().endsWith(ETAG_SUFFIX)
+                && !file.getName().endsWith(".tmp"));
+        if (files == null) {
+            return;
+        }
+        // markUsed() touches files without holding the lock
+        FileUtils.sortByLastModified(files, true);
+        long size = keptFile.length();
+        for (File file : files) {
+            if (file.equals(keptFile)) {
+                continue;
+            }
+            size += file.length();
+            if (size > maxSize) {
+                file.delete();
+                new File(dir, file.getName() + ETAG_SUFFIX).delete();
+            }
+        }
+    }
+}
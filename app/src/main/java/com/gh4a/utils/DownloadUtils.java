@@ -2,14 +2,21 @@ package com.gh4a.utils;
 
 import android.Manifest;
 import android.app.DownloadManager;
+import android.annotation.TargetApi;
+import android.content.ContentResolver;
+import android.content.ContentValues;
 import android.content.Context;
 import android.content.DialogInterface;
 import android.content.pm.PackageManager;
 import android.net.ConnectivityManager;
 import android.net.Uri;
+import android.os.Build;
 import android.os.Environment;
 import android.os.Handler;
 import android.os.Looper;
+import android.provider.MediaStore;
+import android.util.Log;
+import android.widget.Toast;
 
 import com.gh4a.BaseActivity;
 import com.gh4a.Gh4Application;
@@ -18,15 +25,23 @@ import com.gh4a.ServiceFactory;
 import com.meisolsson.githubsdk.model.Download;
 import com.meisolsson.githubsdk.model.ReleaseAsset;
 
+import java.io.File;
 import java.io.IOException;
+import java.io.OutputStream;
 
 import androidx.appcompat.app.AlertDialog;
 import androidx.core.app.ActivityCompat;
+import io.reactivex.Completable;
+import io.reactivex.android.schedulers.AndroidSchedulers;
+import io.reactivex.schedulers.Schedulers;
 import okhttp3.Call;
 import okhttp3.Callback;
 import okhttp3.OkHttpClient;
 import okhttp3.Request;
 import okhttp3.Response;
+import okio.BufferedSink;
+import okio.Okio;
+import okio.Source;
 
 public class DownloadUtils {
     public static void enqueueDownloadWithPermissionCheck(final BaseActivity activity,
@@ -59,6 +74,102 @@ public class DownloadUtils {
                 R.string.download_permission_rationale);
     }
 
+    /**
+     * Saves a file we already have locally to the downloads folder by copying it,
+     * instead of downloading it again.
+     */
+    public static void saveFileWithPermissionCheck(final BaseActivity activity,
+            final File file, final String mimeType, final String fileName) {
+        final ActivityCompat.OnRequestPermissionsResultCallback cb =
+                (requestCode, permissions, grantResults) -> {
+                    if (grantResults[0] == PackageManager.PERMISSION_GRANTED) {
+                        saveFile(activity.getApplicationContext(), file, mimeType, fileName);
+                    }
+                };
+        activity.requestPermission(Manifest.permission.WRITE_EXTERNAL_STORAGE, cb,
+                R.string.download_permission_rationale);
+    }
+
+    private static void saveFile(final Context context, final File file, final String mimeType,
+            final String fileName) {
+        Completable.fromAction(() -> {
+                    if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+                        copyToMediaStoreDownloads(context, file, mimeType, fileName);
+                    } else {
+                        copyToPublicDownloads(context, file, mimeType, fileName);
+                    }
+                })
+                .subscribeOn(Schedulers.io())
+                .observeOn(AndroidSchedulers.mainThread())
+                .subscribe(() -> {
+                    Toast.makeText(context, context.getString(R.string.file_saved, fileName),
+                            Toast.LENGTH_SHORT).show();
+                }, error -> {
+                    Log.w(Gh4Application.LOG_TAG, "Could not save " + fileName, error);
+                    Toast.makeText(context, context.getString(R.string.file_save_failed, fileName),
+                            Toast.LENGTH_LONG).show();
+                });
+    }
+
+    @TargetApi(29)
+    private static void copyToMediaStoreDownloads(Context context, File file, String mimeType,
+            String fileName) throws IOException {
+        ContentResolver cr = context.getContentResolver();
+        ContentValues values = new ContentValues();
+        values.put(MediaStore.Downloads.DISPLAY_NAME, fileName);
+        values.put(MediaStore.Downloads.MIME_TYPE, mimeType);
+        values.put(MediaStore.Downloads.IS_PENDING, 1);
+        Uri uri = cr.insert(MediaStore.Downloads.EXTERNAL_CONTENT_URI, values);
+        if (uri == null) {
+            throw new IOException("Could not create download entry for " + fileName);
+        }
+        try (OutputStream os = cr.openOutputStream(uri);
+                Source source = Okio.source(file)) {
+            if (os == null) {
+                throw new IOException("Could not open " + uri);
+            }
+            BufferedSink sink = Okio.buffer(Okio.sink(os));
+            sink.writeAll(source);
+            sink.flush();
+        } catch (IOException e) {
+            cr.delete(uri, null, null);
+            throw e;
+        }
+        values.clear();
+        values.put(MediaStore.Downloads.IS_PENDING, 0);
+        cr.update(uri, values, null, null);
+    }
+
+    @SuppressWarnings("deprecation")
+    private static void copyToPublicDownloads(Context context, File file, String mimeType,
+            String fileName) throws IOException {
+        File dir = Environment.getExternalStoragePublicDirectory(Environment.DIRECTORY_DOWNLOADS);
+        if (!dir.exists() && !dir.mkdirs()) {
+            throw new IOException("Could not create " + dir);
+        }
+        File target = new File(dir, fileName);
+        // Don't overwrite earlier downloads, name duplicates like DownloadManager does
+        int extensionStart = fileName.lastIndexOf('.');
+        String baseName = extensionStart > 0 ? fileName.substring(0, extensionStart) : fileName;
+        String extension = extensionStart > 0 ? fileName.substring(extensionStart) : "";
+        for (int i = 1; target.exists(); i++) {
+            target = new File(dir, baseName + "-" + i + extension);
+        }
+
+        try (BufferedSink sink = Okio.buffer(Okio.sink(target));
+                Source source = Okio.source(file)) {
+            sink.writeAll(source);
+        } catch (IOException e) {
+            target.delete();
+            throw e;
+        }
+
+        // Makes the file show up in the downloads app, with a notification like other downloads
+        DownloadManager dm = (DownloadManager) context.getSystemService(Context.DOWNLOAD_SERVICE);
+        dm.addCompletedDownload(target.getName(), fileName, true, mimeType,
+                target.getAbsolutePath(), target.length(), true);
+    }
+
     private static void enqueueDownload(Context context, Uri uri, String fileName,
             String description, String mimeType, String mediaType,
             boolean wifiOnly, boolean addAuthHeader) {
@@ -97,9 +208,7 @@ public class DownloadUtils {
         //  provided in the Location header from the response of the first step. You would not
         //  provide an Authorization header here since the required authorization is already a
         //  part of the URL."
-        final OkHttpClient client = ServiceFactory.getHttpClientBuilder()
-                .followRedirects(false)
-                .build();
+        final OkHttpClient client = ServiceFactory.getNoRedirectHttpClient();
         final Request.Builder requestBuilder = new Request.Builder()
                 .url(asset.url())
                 .header("Accept", "application/octet-stream");
@@ -98,6 +98,21 @@ public class FileUtils {
         return MimeTypeMap.getSingleton().getMimeTypeFromExtension(lowercasedExt);
     }
 
+    /**
+     * Sorts files by their modification time. The times are read once up front, so files
+     * being touched concurrently can't break the sort.
+     */
+    public static void sortByLastModified(File[] files, boolean newestFirst) {
+        final HashMap<File, Long> lastModified = new HashMap<>();
+        for (File file : files) {
+            lastModified.put(file, file.lastModified());
+        }
+        Arrays.sort(files, (lhs, rhs) -> {
+            int result = Long.compare(lastModified.get(lhs), lastModified.get(rhs));
+            return newestFirst ? -result : result;
+        });
+    }
+
     private static boolean isExtensionIn(String filename, List<String> extensions) {
         String extension = filename == null ? null : getFileExtension(filename);
         if (StringUtils.isBlank(extension)) {
@@ -0,0 +1,98 @@
+package com.gh4a.utils;
+
+import android.text.TextUtils;
+
+import androidx.annotation.VisibleForTesting;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * In-process store for handing large objects (diffs, comment lists, page contents) to an
+ * activity that is about to be started, instead of marshalling them into the intent extras.
+ * The intent only carries the key.
+ *
+ * Entries are reference counted: the started activity acquires its entries while it is
+ * alive, and only entries nobody holds are evicted once there are too many of them. Entries
+ * do not survive process death, so receivers must be able to re-fetch the data if
+ * {@link #acquire(String)} returns null.
+ */
+public class HandoffStore {
+    private static final int MAX_UNUSED_ENTRIES = 8;
+
+    private static class Entry {
+        private final Object mData;
+        private int mRefCount;
+
+        private Entry(Object data) {
+            mData = data;
+        }
+    }
+
+    // Access ordered, so iteration starts with the least recently used entry
+    private static final LinkedHashMap<String, Entry> sEntries =
+            new LinkedHashMap<>(16, 0.75f, true);
+
+    private HandoffStore() {
+    }
+
+    public static String makeKey(Object... parts) {
+        return TextUtils.join("/", parts);
+    }
+
+    /**
+     * Stores data under the given key, replacing any data stored there before.
+     * References to a replaced entry are carried over.
+     */
+    public static synchronized void put(String key, Object data) {
+        Entry entry = new Entry(data);
+        Entry previous = sEntries.put(key, entry);
+        if (previous != null) {
+            entry.mRefCount = previous.mRefCount;
+        }
+        trimUnusedEntries();
+    }
+
+    /**
+     * Returns the data stored for the given key with its reference count incremented,
+     * or null if there is none. Non-null results must be balanced by {@link #release(String)}.
+     */
+    @SuppressWarnings("unchecked")
+    public static synchronized <T> T acquire(String key) {
+        Entry entry = key != null ? sEntries.get(key) : null;
+        if (entry == null) {
+            return null;
+        }
+        entry.mRefCount++;
+        return (T) entry.mData;
+    }
+
+    public static synchronized void release(String key) {
+        Entry entry = sEntries.get(key);
+        if (entry != null && entry.mRefCount > 0) {
+            entry.mRefCount--;
+            trimUnusedEntries();
+        }
+    }
+
+    @VisibleForTesting
+    static synchronized void clear() {
+        sEntries.clear();
+    }
+
+    private static void trimUnusedEntries() {
+        int unusedCount = 0;
+        for (Entry entry : sEntries.values()) {
+            if (entry.mRefCount == 0) {
+                unusedCount++;
+            }
+        }
+        Iterator<Entry> iter = sEntries.values().iterator();
+        while (unusedCount > MAX_UNUSED_ENTRIES && iter.hasNext()) {
+            if (iter.next().mRefCount == 0) {
+                iter.remove();
+                unusedCount--;
+            }
+        }
+    }
+}
@@ -26,6 +26,7 @@ import android.graphics.drawable.Drawable;
 import androidx.core.content.ContextCompat;
 import android.text.Html.ImageGetter;
 import android.text.Layout;
+import android.text.ParcelableSpan;
 import android.text.Spannable;
 import android.text.SpannableStringBuilder;
 import android.text.Spanned;
@@ -33,6 +34,8 @@ import android.text.TextUtils;
 import android.text.style.AlignmentSpan;
 import android.text.style.BackgroundColorSpan;
 import android.text.style.BulletSpan;
+import android.text.style.ClickableSpan;
+import android.text.style.DynamicDrawableSpan;
 import android.text.style.ForegroundColorSpan;
 import android.text.style.ImageSpan;
 import android.text.style.LeadingMarginSpan;
@@ -57,15 +60,26 @@ import org.xml.sax.InputSource;
 import org.xml.sax.Locator;
 import org.xml.sax.SAXException;
 import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.DefaultHandler;
 
+import java.io.DataInput;
+import java.io.DataOutput;
 import java.io.IOException;
 import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import static android.graphics.Paint.Style.FILL;
 
 public class HtmlUtils {
+    // The URL must not contain quotes, so attributes that aren't separated by whitespace
+    // are still matched separately
+    private static final Pattern URL_ATTRIBUTE_PATTERN =
+            Pattern.compile("(href|src)=\"([^\"\\s]+)\"");
+
     public static void writeScriptInclude(StringBuilder builder, String scriptName) {
         builder.append("<script src='file:///android_asset/");
         builder.append(scriptName);
@@ -129,6 +143,23 @@ public class HtmlUtils {
         }
     }
 
+    private static class CheckboxSpan extends ImageSpan {
+        private final boolean mChecked;
+
+        public CheckboxSpan(Context context, boolean checked) {
+            super(makeCheckboxDrawable(context, checked), ImageSpan.ALIGN_BOTTOM);
+            mChecked = checked;
+        }
+
+        private static Drawable makeCheckboxDrawable(Context context, boolean checked) {
+            Drawable d = ContextCompat.getDrawable(context, checked
+                    ? R.drawable.checkbox_checked_small
+                    : R.drawable.checkbox_unchecked_small);
+            d.setBounds(0, 0, d.getIntrinsicWidth(), d.getIntrinsicHeight());
+            return d;
+        }
+    }
+
     private static class HorizontalLineSpan implements LineBackgroundSpan {
         private final int mColor;
         private final float mHeight;
@@ -155,36 +186,35 @@ public class HtmlUtils {
     public static String rewriteRelativeUrls(final String html, final String repoUser,
             final String repoName, final String ref, final String folderPath) {
         final String baseUrl = "https://github.com/" + repoUser + "/" + repoName + "/blob/" + ref + "/" + folderPath;
-        String rewrittenHtml = rewriteUrlsInAttribute("href", html, baseUrl);
-
         final String baseUrlForImages = "https://raw.github.com/" + repoUser + "/" + repoName + "/" + ref + "/" + folderPath;
-        return rewriteUrlsInAttribute("src", rewrittenHtml, baseUrlForImages);
-    }
 
-    private static String rewriteUrlsInAttribute(String attribute, String html, String baseUrl) {
-        final Matcher matcher = Pattern.compile("(" + attribute + ")=\"(\\S+)\"").matcher(html);
-        StringBuffer sb = null; // lazy initialized only if there's any match
+        // Rewrite links and image sources in a single pass over the HTML
+        final Matcher matcher = URL_ATTRIBUTE_PATTERN.matcher(html);
+        StringBuilder sb = null; // lazy initialized only if there's anything to rewrite
+        int copiedUpTo = 0;
         while (matcher.find()) {
             String url = matcher.group(2);
             boolean isAbsoluteUrl = url.contains(":");
             boolean isAnchorUrl = url.startsWith("#");
-            if (!isAbsoluteUrl && !isAnchorUrl) {
-                if (url.startsWith("/")) {
-                    url = baseUrl + url;
-                } else {
-                    url = baseUrl + "/" + url;
-                }
+            if (isAbsoluteUrl || isAnchorUrl) {
+                continue;
             }
             if (sb == null) {
-                sb = new StringBuffer(html.length());
+                sb = new StringBuilder(html.length() + 1024);
             }
-            matcher.appendReplacement(sb, Matcher.quoteReplacement(matcher.group(1) + "=\"" + url + "\""));
+            String base = matcher.group(1).equals("src") ? baseUrlForImages : baseUrl;
+            sb.append(html, copiedUpTo, matcher.start(2)).append(base);
+            if (!url.startsWith("/")) {
+                sb.append('/');
+            }
+            sb.append(url);
+            copiedUpTo = matcher.end(2);
         }
         if (sb == null) {
-            // No match was found
+            // Nothing to rewrite
             return html;
         }
-        matcher.appendTail(sb);
+        sb.append(html, copiedUpTo, html.length());
         return sb.toString();
     }
 
@@ -203,6 +233,212 @@ public class HtmlUtils {
         return Html.fromHtml(context, html, imageGetter);
     }
 
+    private static final int SPANNED_FORMAT_VERSION = 1;
+    private static final int SPAN_STYLE = 1;
+    private static final int SPAN_RELATIVE_SIZE = 2;
+    private static final int SPAN_TYPEFACE = 3;
+    private static final int SPAN_UNDERLINE = 4;
+    private static final int SPAN_STRIKETHROUGH = 5;
+    private static final int SPAN_SUPERSCRIPT = 6;
+    private static final int SPAN_SUBSCRIPT = 7;
+    private static final int SPAN_FOREGROUND_COLOR = 8;
+    private static final int SPAN_BACKGROUND_COLOR = 9;
+    private static final int SPAN_ALIGNMENT = 10;
+    private static final int SPAN_BULLET = 11;
+    private static final int SPAN_LINK = 12;
+    private static final int SPAN_REPLY = 13;
+    private static final int SPAN_CODE_BLOCK = 14;
+    private static final int SPAN_HORIZONTAL_LINE = 15;
+    private static final int SPAN_IMAGE = 16;
+    private static final int SPAN_CHECKBOX = 17;
+
+    /**
+     * Writes the result of {@link #encode} in a compact binary form that can be read back
+     * with {@link #readEncoded} a lot faster than parsing the HTML again.
+     *
+     * @return false if the text contains spans that can't be written
+     */
+    static boolean writeEncoded(CharSequence encoded, DataOutput out) throws IOException {
+        byte[] text = encoded.toString().getBytes(StandardCharsets.UTF_8);
+        out.writeInt(SPANNED_FORMAT_VERSION);
+        out.writeInt(text.length);
+        out.write(text);
+
+        if (!(encoded instanceof Spanned)) {
+            out.writeInt(0);
+            return true;
+        }
+
+        Spanned spanned = (Spanned) encoded;
+        // getSpans() returns the spans in the order they were added,
+        // which matters e.g. for the drawing order of leading margins
+        Object[] spans = spanned.getSpans(0, spanned.length(), Object.class);
+        int count = 0;
+        for (Object span : spans) {
+            if (isWritableSpan(span)) {
+                count++;
+            }
+        }
+        out.writeInt(count);
+        for (Object span : spans) {
+            if (!isWritableSpan(span)) {
+                if (span instanceof ParcelableSpan || span instanceof ParagraphStyle
+                        || span instanceof ClickableSpan || span instanceof DynamicDrawableSpan) {
+                    // A span that affects rendering, but that we don't know about
+                    return false;
+                }
+                // Leftover mark of an unclosed tag, which doesn't render
+                continue;
+            }
+            out.writeInt(spanned.getSpanStart(span));
+            out.writeInt(spanned.getSpanEnd(span));
+            out.writeInt(spanned.getSpanFlags(span));
+            writeSpan(span, out);
+        }
+        return true;
+    }
+
+    /**
+     * Reads text written by {@link #writeEncoded}, fetching images via the given image getter.
+     *
+     * @return null if the data was written in an incompatible format
+     */
+    static CharSequence readEncoded(Context context, DataInput in,
+            ImageGetter imageGetter) throws IOException {
+        if (in.readInt() != SPANNED_FORMAT_VERSION) {
+            return null;
+        }
+        byte[] text = new byte[in.readInt()];
+        in.readFully(text);
+        SpannableStringBuilder builder =
+                new SpannableStringBuilder(new String(text, StandardCharsets.UTF_8));
+
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            int start = in.readInt();
+            int end = in.readInt();
+            int flags = in.readInt();
+            Object span = readSpan(context, in, imageGetter);
+            if (span == null) {
+                return null;
+            }
+            builder.setSpan(span, start, end, flags);
+        }
+        return builder;
+    }
+
+    private static boolean isWritableSpan(Object span) {
+        return span instanceof StyleSpan || span instanceof RelativeSizeSpan
+                || span instanceof TypefaceSpan || span instanceof UnderlineSpan
+                || span instanceof StrikethroughSpan || span instanceof SuperscriptSpan
+                || span instanceof SubscriptSpan || span instanceof ForegroundColorSpan
+                || span instanceof BackgroundColorSpan || span instanceof AlignmentSpan.Standard
+                || span instanceof BulletSpan || span instanceof LinkSpan
+                || span instanceof ReplySpan || span instanceof CodeBlockSpan
+                || span instanceof HorizontalLineSpan || span instanceof ImageSpan;
+    }
+
+    private static void writeSpan(Object span, DataOutput out) throws IOException {
+        // Subclasses need to be checked before their base classes
+        if (span instanceof CheckboxSpan) {
+            out.writeByte(SPAN_CHECKBOX);
+            out.writeBoolean(((CheckboxSpan) span).mChecked);
+        } else if (span instanceof ImageSpan) {
+            out.writeByte(SPAN_IMAGE);
+            writeNullableString(((ImageSpan) span).getSource(), out);
+        } else if (span instanceof StyleSpan) {
+            out.writeByte(SPAN_STYLE);
+            out.writeInt(((StyleSpan) span).getStyle());
+        } else if (span instanceof RelativeSizeSpan) {
+            out.writeByte(SPAN_RELATIVE_SIZE);
+            out.writeFloat(((RelativeSizeSpan) span).getSizeChange());
+        } else if (span instanceof TypefaceSpan) {
+            out.writeByte(SPAN_TYPEFACE);
+            writeNullableString(((TypefaceSpan) span).getFamily(), out);
+        } else if (span instanceof UnderlineSpan) {
+            out.writeByte(SPAN_UNDERLINE);
+        } else if (span instanceof StrikethroughSpan) {
+            out.writeByte(SPAN_STRIKETHROUGH);
+        } else if (span instanceof SuperscriptSpan) {
+            out.writeByte(SPAN_SUPERSCRIPT);
+        } else if (span instanceof SubscriptSpan) {
+            out.writeByte(SPAN_SUBSCRIPT);
+        } else if (span instanceof ForegroundColorSpan) {
+            out.writeByte(SPAN_FOREGROUND_COLOR);
+            out.writeInt(((ForegroundColorSpan) span).getForegroundColor());
+        } else if (span instanceof BackgroundColorSpan) {
+            out.writeByte(SPAN_BACKGROUND_COLOR);
+            out.writeInt(((BackgroundColorSpan) span).getBackgroundColor());
+        } else if (span instanceof AlignmentSpan.Standard) {
+            out.writeByte(SPAN_ALIGNMENT);
+            out.writeUTF(((AlignmentSpan.Standard) span).getAlignment().name());
+        } else if (span instanceof BulletSpan) {
+            // All our bullets use the same margin, which is restored from resources
+            out.writeByte(SPAN_BULLET);
+        } else if (span instanceof LinkSpan) {
+            out.writeByte(SPAN_LINK);
+            writeNullableString(((LinkSpan) span).getUrl(), out);
+        } else if (span instanceof ReplySpan) {
+            ReplySpan reply = (ReplySpan) span;
+            out.writeByte(SPAN_REPLY);
+            out.writeInt(reply.mMargin);
+            out.writeInt(reply.mSize);
+            out.writeInt(reply.mColor);
+        } else if (span instanceof CodeBlockSpan) {
+            out.writeByte(SPAN_CODE_BLOCK);
+            out.writeInt(((CodeBlockSpan) span).mColor);
+        } else if (span instanceof HorizontalLineSpan) {
+            HorizontalLineSpan line = (HorizontalLineSpan) span;
+            out.writeByte(SPAN_HORIZONTAL_LINE);
+            out.writeFloat(line.mHeight);
+            out.writeInt(line.mColor);
+        }
+    }
+
+    private static Object readSpan(Context context, DataInput in,
+            ImageGetter imageGetter) throws IOException {
+        switch (in.readByte()) {
+            case SPAN_STYLE: return new StyleSpan(in.readInt());
+            case SPAN_RELATIVE_SIZE: return new RelativeSizeSpan(in.readFloat());
+            case SPAN_TYPEFACE: return new TypefaceSpan(readNullableString(in));
+            case SPAN_UNDERLINE: return new UnderlineSpan();
+            case SPAN_STRIKETHROUGH: return new StrikethroughSpan();
+            case SPAN_SUPERSCRIPT: return new SuperscriptSpan();
+            case SPAN_SUBSCRIPT: return new SubscriptSpan();
+            case SPAN_FOREGROUND_COLOR: return new ForegroundColorSpan(in.readInt());
+            case SPAN_BACKGROUND_COLOR: return new BackgroundColorSpan(in.readInt());
+            case SPAN_ALIGNMENT:
+                try {
+                    return new AlignmentSpan.Standard(Layout.Alignment.valueOf(in.readUTF()));
+                } catch (IllegalArgumentException e) {
+                    return null;
+                }
+            case SPAN_BULLET: return new BulletSpan(context.getResources()
+                    .getDimensionPixelSize(R.dimen.bullet_span_margin));
+            case SPAN_LINK: return new LinkSpan(readNullableString(in));
+            case SPAN_REPLY: return new ReplySpan(in.readInt(), in.readInt(), in.readInt());
+            case SPAN_CODE_BLOCK: return new CodeBlockSpan(in.readInt());
+            case SPAN_HORIZONTAL_LINE: return new HorizontalLineSpan(in.readFloat(), in.readInt());
+            case SPAN_IMAGE: {
+                String source = readNullableString(in);
+                return new ImageSpan(imageGetter.getDrawable(source), source);
+            }
+            case SPAN_CHECKBOX: return new CheckboxSpan(context, in.readBoolean());
+            default: return null;
+        }
+    }
+
+    private static void writeNullableString(String value, DataOutput out) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String readNullableString(DataInput in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
     /* a copy of the framework's HTML class, stripped down and extended for our use cases */
     private static class Html {
         private Html() { }
@@ -212,18 +448,27 @@ public class HtmlUtils {
          */
         private static class HtmlParser {
             private static final HTMLSchema schema = new HTMLSchema();
+
+            // Parsers keep state while parsing, so each thread gets its own one,
+            // which is reused for all documents converted on that thread
+            private static final ThreadLocal<Parser> parsers = new ThreadLocal<Parser>() {
+                @Override
+                protected Parser initialValue() {
+                    Parser parser = new Parser();
+                    try {
+                        parser.setProperty(Parser.schemaProperty, schema);
+                    } catch (org.xml.sax.SAXNotRecognizedException | org.xml.sax.SAXNotSupportedException e) {
+                        // Should not happen.
+                        throw new RuntimeException(e);
+                    }
+                    return parser;
+                }
+            };
         }
 
         public static Spanned fromHtml(Context context,
                 String source, android.text.Html.ImageGetter imageGetter) {
-            Parser parser = new Parser();
-            try {
-                parser.setProperty(Parser.schemaProperty, HtmlParser.schema);
-            } catch (org.xml.sax.SAXNotRecognizedException | org.xml.sax.SAXNotSupportedException e) {
-                // Should not happen.
-                throw new RuntimeException(e);
-            }
-
+            Parser parser = HtmlParser.parsers.get();
             HtmlToSpannedConverter converter =
                     new HtmlToSpannedConverter(context, source, imageGetter, parser);
             return converter.convert();
@@ -244,45 +489,24 @@ public class HtmlUtils {
 
         private final Context mContext;
         private final String mSource;
+        private static final ContentHandler NO_OP_HANDLER = new DefaultHandler();
+
         private final XMLReader mReader;
         private final SpannableStringBuilder mSpannableStringBuilder;
         private final android.text.Html.ImageGetter mImageGetter;
-
-        private static Pattern sTextAlignPattern;
-        private static Pattern sForegroundColorPattern;
-        private static Pattern sBackgroundColorPattern;
-        private static Pattern sTextDecorationPattern;
-
-        private static Pattern getTextAlignPattern() {
-            if (sTextAlignPattern == null) {
-                sTextAlignPattern = Pattern.compile("(?:\\s+|\\A)text-align\\s*:\\s*(\\S*)\\b");
-            }
-            return sTextAlignPattern;
-        }
-
-        private static Pattern getForegroundColorPattern() {
-            if (sForegroundColorPattern == null) {
-                sForegroundColorPattern = Pattern.compile(
-                        "(?:\\s+|\\A)color\\s*:\\s*(\\S*)\\b");
-            }
-            return sForegroundColorPattern;
-        }
-
-        private static Pattern getBackgroundColorPattern() {
-            if (sBackgroundColorPattern == null) {
-                sBackgroundColorPattern = Pattern.compile(
-                        "(?:\\s+|\\A)background(?:-color)?\\s*:\\s*(\\S*)\\b");
-            }
-            return sBackgroundColorPattern;
-        }
-
-        private static Pattern getTextDecorationPattern() {
-            if (sTextDecorationPattern == null) {
-                sTextDecorationPattern = Pattern.compile(
-                        "(?:\\s+|\\A)text-decoration\\s*:\\s*(\\S*)\\b");
-            }
-            return sTextDecorationPattern;
-        }
+        // Marks of currently open tags by their class, most recently opened last
+        private final HashMap<Class<?>, ArrayList<Object>> mOpenMarks = new HashMap<>();
+        // Reused for all character runs to avoid allocating a buffer per SAX callback
+        private final StringBuilder mTextBuffer = new StringBuilder();
+
+        private static final Pattern TEXT_ALIGN_PATTERN =
+                Pattern.compile("(?:\\s+|\\A)text-align\\s*:\\s*(\\S*)\\b");
+        private static final Pattern FOREGROUND_COLOR_PATTERN =
+                Pattern.compile("(?:\\s+|\\A)color\\s*:\\s*(\\S*)\\b");
+        private static final Pattern BACKGROUND_COLOR_PATTERN =
+                Pattern.compile("(?:\\s+|\\A)background(?:-color)?\\s*:\\s*(\\S*)\\b");
+        private static final Pattern TEXT_DECORATION_PATTERN =
+                Pattern.compile("(?:\\s+|\\A)text-decoration\\s*:\\s*(\\S*)\\b");
 
         public HtmlToSpannedConverter(Context context, String source,
                 android.text.Html.ImageGetter imageGetter, Parser parser) {
@@ -310,6 +534,10 @@ public class HtmlUtils {
             } catch (SAXException e) {
                 // TagSoup doesn't throw parse exceptions.
                 throw new RuntimeException(e);
+            } finally {
+                // The parser is kept per thread, so don't let it keep us (and thus the
+                // context, image getter and text) alive until that thread parses again
+                mReader.setContentHandler(NO_OP_HANDLER);
             }
 
             // Replace the placeholders for leading margin spans in reverse order, so the leading
@@ -382,11 +610,7 @@ public class HtmlUtils {
             } else if (tag.equalsIgnoreCase("input")) {
                 if ("checkbox".equalsIgnoreCase(attributes.getValue("", "type"))) {
                     boolean checked = attributes.getIndex("", "checked") >= 0;
-                    Drawable d = ContextCompat.getDrawable(mContext, checked
-                            ? R.drawable.checkbox_checked_small
-                            : R.drawable.checkbox_unchecked_small);
-                    d.setBounds(0, 0, d.getIntrinsicWidth(), d.getIntrinsicHeight());
-                    ImageSpan span = new ImageSpan(d, ImageSpan.ALIGN_BOTTOM);
+                    ImageSpan span = new CheckboxSpan(mContext, checked);
 
                     mSpannableStringBuilder.append("  ");
                     mSpannableStringBuilder.setSpan(span, mSpannableStringBuilder.length() - 2,
@@ -498,7 +722,7 @@ public class HtmlUtils {
                     if (code.mHasPre) {
                         setSpanFromMark(code, new CodeBlockSpan(mCodeBlockBackgroundColor));
                     } else {
-                        mSpannableStringBuilder.removeSpan(code);
+                        removeMark(code);
                     }
                 }
             } else if (tag.equalsIgnoreCase("span")) {
@@ -607,7 +831,7 @@ public class HtmlUtils {
 
             String style = attributes.getValue("", "style");
             if (style != null) {
-                Matcher m = getTextAlignPattern().matcher(style);
+                Matcher m = TEXT_ALIGN_PATTERN.matcher(style);
                 if (m.find()) {
                     String alignment = m.group(1);
                     if (alignment.equalsIgnoreCase("start")) {
@@ -625,7 +849,7 @@ public class HtmlUtils {
             Newline n = getLast(Newline.class);
             if (n != null) {
                 appendNewlines(n.mNumNewlines);
-                mSpannableStringBuilder.removeSpan(n);
+                removeMark(n);
             }
 
             Alignment a = getLast(Alignment.class);
@@ -654,7 +878,7 @@ public class HtmlUtils {
             ListItem item = getLast(ListItem.class);
             if (item != null) {
                 if (item.mOrdered) {
-                    mSpannableStringBuilder.removeSpan(item);
+                    removeMark(item);
                 } else {
                     setSpanFromMark(item, new BulletSpan(mBulletMargin));
                 }
@@ -721,27 +945,38 @@ public class HtmlUtils {
         }
 
         private void endCodeSnippetLine(Code codeMark) {
-            mSpannableStringBuilder.removeSpan(getLast(Pre.class));
+            Pre pre = getLast(Pre.class);
+            if (pre != null) {
+                removeMark(pre);
+            }
             setSpanFromMark(codeMark, new TypefaceSpan("monospace"), new CodeBlockSpan(codeMark.mColor));
         }
 
         private <T> T getLast(Class<T> kind) {
-        /*
-         * This knows that the last returned object from getSpans()
-         * will be the most recently added.
-         */
-            T[] objs = mSpannableStringBuilder.getSpans(0, mSpannableStringBuilder.length(), kind);
-
-            if (objs.length == 0) {
+            ArrayList<Object> marks = mOpenMarks.get(kind);
+            if (marks == null || marks.isEmpty()) {
                 return null;
-            } else {
-                return objs[objs.length - 1];
             }
+            return kind.cast(marks.get(marks.size() - 1));
+        }
+
+        private void removeMark(Object mark) {
+            ArrayList<Object> marks = mOpenMarks.get(mark.getClass());
+            if (marks != null) {
+                // Marks are almost always closed in reverse order, so search from the end
+                for (int i = marks.size() - 1; i >= 0; i--) {
+                    if (marks.get(i) == mark) {
+                        marks.remove(i);
+                        break;
+                    }
+                }
+            }
+            mSpannableStringBuilder.removeSpan(mark);
         }
 
         private void setSpanFromMark(Object mark, Object... spans) {
             int where = mSpannableStringBuilder.getSpanStart(mark);
-            mSpannableStringBuilder.removeSpan(mark);
+            removeMark(mark);
             int len = mSpannableStringBuilder.length();
             if (where != len) {
                 for (Object span : spans) {
@@ -754,6 +989,13 @@ public class HtmlUtils {
         }
 
         private void start(Object mark) {
+            ArrayList<Object> marks = mOpenMarks.get(mark.getClass());
+            if (marks == null) {
+                marks = new ArrayList<>();
+                mOpenMarks.put(mark.getClass(), marks);
+            }
+            marks.add(mark);
+
             int len = mSpannableStringBuilder.length();
             mSpannableStringBuilder.setSpan(mark, len, len, Spannable.SPAN_INCLUSIVE_EXCLUSIVE);
         }
@@ -768,7 +1010,7 @@ public class HtmlUtils {
         private void startCssStyle(Attributes attributes) {
             String style = attributes.getValue("", "style");
             if (style != null) {
-                Matcher m = getForegroundColorPattern().matcher(style);
+                Matcher m = FOREGROUND_COLOR_PATTERN.matcher(style);
                 if (m.find()) {
                     Integer c = parseColor(m.group(1));
                     if (c != null) {
@@ -776,7 +1018,7 @@ public class HtmlUtils {
                     }
                 }
 
-                m = getBackgroundColorPattern().matcher(style);
+                m = BACKGROUND_COLOR_PATTERN.matcher(style);
                 if (m.find()) {
                     Integer c = parseColor(m.group(1));
                     if (c != null) {
@@ -784,7 +1026,7 @@ public class HtmlUtils {
                     }
                 }
 
-                m = getTextDecorationPattern().matcher(style);
+                m = TEXT_DECORATION_PATTERN.matcher(style);
                 if (m.find()) {
                     String textDecoration = m.group(1);
                     if (textDecoration.equalsIgnoreCase("line-through")) {
@@ -901,15 +1143,16 @@ public class HtmlUtils {
         }
 
         public void characters(char[] ch, int start, int length) throws SAXException {
+            StringBuilder sb = mTextBuffer;
+            sb.setLength(0);
+
             if (getLast(Pre.class) != null) {
                 /* We're in a pre block, so keep whitespace intact. */
-                for (int i = 0; i < length; i++) {
-                    mSpannableStringBuilder.append(ch[i + start]);
-                }
+                sb.append(ch, start, length);
+                mSpannableStringBuilder.append(sb);
                 return;
             }
 
-            StringBuilder sb = new StringBuilder();
             /*
              * Ignore whitespace that immediately follows other whitespace;
              * newlines count as spaces.
@@ -24,8 +24,8 @@ import android.graphics.Canvas;
 import android.graphics.Point;
 import android.graphics.drawable.BitmapDrawable;
 import android.graphics.drawable.Drawable;
-import android.os.AsyncTask;
 import android.os.Handler;
+import android.os.Process;
 import android.text.Html.ImageGetter;
 import android.text.Spanned;
 import android.text.TextUtils;
@@ -42,27 +42,55 @@ import com.gh4a.R;
 import com.gh4a.ServiceFactory;
 import com.gh4a.fragment.SettingsFragment;
 
+import java.io.BufferedInputStream;
 import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.lang.ref.WeakReference;
 import java.net.URLConnection;
 import java.util.ArrayList;
+import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
 import androidx.appcompat.graphics.drawable.DrawableWrapper;
 import androidx.core.content.ContextCompat;
+import io.reactivex.Maybe;
+import io.reactivex.Single;
+import io.reactivex.android.schedulers.AndroidSchedulers;
+import io.reactivex.disposables.Disposable;
+import io.reactivex.schedulers.Schedulers;
 import okhttp3.HttpUrl;
 import okhttp3.MediaType;
 import okhttp3.OkHttpClient;
 import okhttp3.Request;
 import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.BufferedSink;
+import okio.BufferedSource;
+import okio.Okio;
 import pl.droidsonroids.gif.GifDrawable;
 
 public class HttpImageGetter {
+    // Enough to find out the type of all common image formats
+    private static final long PEEK_SIZE = 64 * 1024;
+    // Image headers can follow large metadata blocks (e.g. EXIF thumbnails or ICC profiles),
+    // so the dimensions are read from a rewindable stream that may buffer up to this much
+    private static final int MAX_HEADER_SIZE = 4 * 1024 * 1024;
+    private static final String GIF_CACHE_DIR_NAME = "inline-gifs";
+    private static final long MAX_GIF_CACHE_SIZE = 30 * 1024 * 1024;
+
     private static class GifCallback implements Drawable.Callback {
         private final List<WeakReference<TextView>> mViewRefs;
         private final Handler mHandler = new Handler();
@@ -116,111 +144,216 @@ public class HttpImageGetter {
         }
     }
 
-    // interface just used for tracking purposes
+    // Holds a reference to a shared cache entry, which must be released when done with it
     private static class LoadedBitmapDrawable extends BitmapDrawable {
-        public LoadedBitmapDrawable(Resources res, Bitmap bitmap) {
-            super(res, bitmap);
+        private final ImageMemoryCache.Entry mEntry;
+
+        public LoadedBitmapDrawable(Resources res, ImageMemoryCache.Entry entry) {
+            super(res, entry.getBitmap());
+            mEntry = entry;
+            setBounds(0, 0, entry.getBitmap().getWidth(), entry.getBitmap().getHeight());
+        }
+
+        public void release() {
+            ImageMemoryCache.release(mEntry);
         }
     }
 
-    private static class PlaceholderDrawable extends DrawableWrapper implements Runnable {
+    private static class PlaceholderDrawable extends DrawableWrapper {
         private final String mUrl;
-        private final ObjectInfo mInfo;
-        private Drawable mLoadedImage;
+        private ImageLoadTask mTask;
+        private boolean mHasLoadedImage;
 
-        public PlaceholderDrawable(String url, ObjectInfo info, Drawable placeholder) {
+        public PlaceholderDrawable(String url, Drawable placeholder) {
             super(placeholder);
             setBounds(0, 0, placeholder.getIntrinsicWidth(), placeholder.getIntrinsicHeight());
             mUrl = url;
-            mInfo = info;
         }
 
         public String getUrl() {
             return mUrl;
         }
 
-        public void addLoadedImage(Drawable image, Handler handler) {
-            synchronized (this) {
-                mLoadedImage = image;
-                handler.post(this);
-            }
+        public boolean needsLoad() {
+            return !mHasLoadedImage && mTask == null;
+        }
+
+        public void setLoadedImage(Drawable image) {
+            mHasLoadedImage = true;
+            setWrappedDrawable(image);
+            setBounds(0, 0, image.getIntrinsicWidth(), image.getIntrinsicHeight());
+        }
+    }
+
+    private class ImageLoadTask implements Runnable, Comparable<ImageLoadTask> {
+        private final ObjectInfo mInfo;
+        private final PlaceholderDrawable mPlaceholder;
+        private long mPriority;
+        private volatile boolean mCancelled;
+
+        public ImageLoadTask(ObjectInfo info, PlaceholderDrawable placeholder) {
+            mInfo = info;
+            mPlaceholder = placeholder;
         }
 
         @Override
         public void run() {
-            setWrappedDrawable(mLoadedImage);
-            setBounds(0, 0, mLoadedImage.getIntrinsicWidth(), mLoadedImage.getIntrinsicHeight());
-            mInfo.invalidateViewsForNewDrawable();
+            if (mCancelled) {
+                mHandler.post(() -> mInfo.onImageLoaded(this, null));
+                return;
+            }
+            Drawable drawable = loadImageForUrl(mPlaceholder.getUrl());
+            mHandler.post(() -> mInfo.onImageLoaded(this, drawable));
+        }
+
+        @Override
+        public int compareTo(@NonNull ImageLoadTask other) {
+            return Long.compare(other.mPriority, mPriority);
         }
     }
 
     private class ObjectInfo implements ImageGetter {
         private final ArrayList<WeakReference<TextView>> mViewRefs = new ArrayList<>();
         private final List<GifInfo> mGifs = new ArrayList<>();
-        private final List<WeakReference<Bitmap>> mBitmaps = new ArrayList<>();
+        private final List<LoadedBitmapDrawable> mBitmapDrawables = new ArrayList<>();
+        // Queued or running loads of our images
+        private final List<ImageLoadTask> mTasks = new ArrayList<>();
+        private final Object mId;
 
         private CharSequence mHtml;
-        private ImageGetterAsyncTask mTask;
-        private boolean mHasStartedImageLoad;
+        private CharSequence mPlaceholderText;
+        private Disposable mEncodeDisposable;
         private boolean mResumed = true;
 
+        ObjectInfo(Object id) {
+            mId = id;
+        }
+
         void bind(TextView view, String html) {
             addView(view);
 
+            if (mHtml == null && mEncodeDisposable != null) {
+                // Show the placeholder until the background encode is done
+                apply(mPlaceholderText);
+                return;
+            }
             if (mHtml == null) {
-                encode(view.getContext(), html);
+                // Skip the disk cache here, as we're on the main thread
+                mHtml = HtmlUtils.encode(view.getContext(), html, this);
             }
 
             apply(mHtml);
+            loadImages();
+        }
 
-            if (!mHasStartedImageLoad) {
-                ImageSpan[] spans = getImageSpans();
-                if (spans.length > 0) {
-                    ArrayList<PlaceholderDrawable> imagesToLoad = new ArrayList<>();
-                    for (ImageSpan span : spans) {
-                        Drawable d = span.getDrawable();
-                        if (d instanceof PlaceholderDrawable) {
-                            imagesToLoad.add((PlaceholderDrawable) d);
-                        }
-                    }
-                    mTask = new ImageGetterAsyncTask(HttpImageGetter.this, this);
-                    mTask.executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR,
-                            imagesToLoad.toArray(new PlaceholderDrawable[0]));
+        private void loadImages() {
+            // Views bound last are the ones the user is looking at, so load their images first
+            long priority = sNextTaskPriority++;
+            for (ImageLoadTask task : mTasks) {
+                if (sExecutor.remove(task)) {
+                    task.mPriority = priority;
+                    sExecutor.execute(task);
+                }
+            }
+            for (ImageSpan span : getImageSpans()) {
+                Drawable d = span.getDrawable();
+                if (d instanceof PlaceholderDrawable && ((PlaceholderDrawable) d).needsLoad()) {
+                    PlaceholderDrawable placeholder = (PlaceholderDrawable) d;
+                    placeholder.mTask = new ImageLoadTask(this, placeholder);
+                    placeholder.mTask.mPriority = priority;
+                    mTasks.add(placeholder.mTask);
+                    sExecutor.execute(placeholder.mTask);
                 }
-                mHasStartedImageLoad = true;
             }
         }
         void unbind(TextView view) {
             removeView(view);
+            if (mViewRefs.isEmpty()) {
+                // Nobody is going to see the images anymore, so drop the loads that didn't
+                // start yet; they'll be queued again when binding again
+                cancelPendingTasks(false);
+            }
         }
 
-        void encode(Context context, String html) {
-            CharSequence encoded = HtmlUtils.encode(context, html, this);
+        void encodeAsync(Context context, Date updatedAt, String html,
+                CharSequence placeholderText) {
+            if (mHtml != null || mEncodeDisposable != null) {
+                return;
+            }
+            mPlaceholderText = placeholderText;
+            // Keep the disk cache accesses off the computation threads doing the encoding
+            Single<CharSequence> encodeSingle = Single
+                    .fromCallable(() -> HtmlUtils.encode(context, html, this))
+                    .subscribeOn(Schedulers.computation())
+                    .observeOn(Schedulers.io())
+                    .doOnSuccess(encoded ->
+                            RenderedHtmlCache.put(context, mId, updatedAt, html, encoded));
+            mEncodeDisposable = Maybe
+                    .fromCallable(() -> RenderedHtmlCache.get(context, mId, updatedAt, html, this))
+                    .subscribeOn(Schedulers.io())
+                    .switchIfEmpty(encodeSingle)
+                    .observeOn(AndroidSchedulers.mainThread())
+                    .subscribe(this::onEncoded, error -> {
+                        // Encode on the next bind instead
+                        Log.w(Gh4Application.LOG_TAG, "Could not encode HTML", error);
+                        mEncodeDisposable = null;
+                        mPlaceholderText = null;
+                    });
+        }
+
+        private void onEncoded(CharSequence encoded) {
+            mEncodeDisposable = null;
+            mPlaceholderText = null;
+            mHtml = encoded;
+            if (!mViewRefs.isEmpty()) {
+                apply(mHtml);
+                loadImages();
+            }
+        }
+
+        private void cancelEncode() {
+            if (mEncodeDisposable != null) {
+                mEncodeDisposable.dispose();
+                mEncodeDisposable = null;
+                mPlaceholderText = null;
+            }
+        }
+
+        void encode(Context context, Date updatedAt, String html) {
+            CharSequence encoded = RenderedHtmlCache.get(context, mId, updatedAt, html, this);
+            if (encoded == null) {
+                encoded = HtmlUtils.encode(context, html, this);
+                RenderedHtmlCache.put(context, mId, updatedAt, html, encoded);
+            }
             synchronized (this) {
                 mHtml = encoded;
             }
         }
 
-        void onImageLoadDone() {
-            discardLoadedImages();
+        void onImageLoaded(ImageLoadTask task, Drawable d) {
+            mTasks.remove(task);
+            if (task.mPlaceholder.mTask == task) {
+                task.mPlaceholder.mTask = null;
+            }
+            if (d == null) {
+                return;
+            }
+            if (task.mCancelled || mDestroyed) {
+                discardImage(d);
+                return;
+            }
 
-            for (ImageSpan span : getImageSpans()) {
-                Drawable d = span.getDrawable();
-                if (d instanceof PlaceholderDrawable) {
-                    PlaceholderDrawable phd = (PlaceholderDrawable) d;
-                    d = phd.getWrappedDrawable();
-                }
-                if (d instanceof GifDrawable) {
-                    GifDrawable gd = (GifDrawable) d;
-                    if (mResumed) {
-                        gd.start();
-                    }
-                    mGifs.add(new GifInfo(gd, mViewRefs));
-                } else if (d instanceof LoadedBitmapDrawable) {
-                    BitmapDrawable bd = (BitmapDrawable) d;
-                    mBitmaps.add(new WeakReference<>(bd.getBitmap()));
+            task.mPlaceholder.setLoadedImage(d);
+            if (d instanceof GifDrawable) {
+                GifDrawable gd = (GifDrawable) d;
+                if (mResumed) {
+                    gd.start();
                 }
+                mGifs.add(new GifInfo(gd, mViewRefs));
+            } else if (d instanceof LoadedBitmapDrawable) {
+                mBitmapDrawables.add((LoadedBitmapDrawable) d);
             }
+            invalidateViewsForNewDrawable();
         }
 
         void invalidateViewsForNewDrawable() {
@@ -256,28 +389,37 @@ public class HttpImageGetter {
             return spanned.getSpans(0, spanned.length(), ImageSpan.class);
         }
 
-        private void discardLoadedImages() {
-            for (WeakReference<Bitmap> ref : mBitmaps) {
-                Bitmap bitmap = ref.get();
-                if (bitmap != null) {
-                    bitmap.recycle();
+        private void cancelPendingTasks(boolean includingRunning) {
+            for (int i = mTasks.size() - 1; i >= 0; i--) {
+                ImageLoadTask task = mTasks.get(i);
+                if (sExecutor.remove(task)) {
+                    mTasks.remove(i);
+                    task.mPlaceholder.mTask = null;
+                } else if (includingRunning) {
+                    task.mCancelled = true;
                 }
             }
-            mBitmaps.clear();
+        }
+
+        private void discardLoadedImages() {
+            cancelEncode();
+            cancelPendingTasks(true);
+            for (LoadedBitmapDrawable d : mBitmapDrawables) {
+                d.release();
+            }
+            mBitmapDrawables.clear();
             for (GifInfo info : mGifs) {
                 info.destroy();
             }
             mGifs.clear();
-            mHasStartedImageLoad = false;
         }
 
         void clearHtmlCache() {
-            if (mTask != null) {
-                mTask.cancel(true);
-                mTask = null;
-            }
+            // The images of the old HTML are still displayed until the next bind,
+            // so only stop loading them
+            cancelPendingTasks(true);
+            cancelEncode();
             mHtml = null;
-            mHasStartedImageLoad = false;
         }
 
         private void apply(CharSequence text) {
@@ -317,10 +459,34 @@ public class HttpImageGetter {
 
         @Override
         public Drawable getDrawable(String source) {
-            return new PlaceholderDrawable(source, this, mLoadingDrawable);
+            return new PlaceholderDrawable(source, mLoadingDrawable);
         }
     }
 
+    private static final int WORKER_COUNT = 4;
+    private static final int WORKER_KEEP_ALIVE_SECONDS = 5;
+
+    // Shared by all instances, so images of all screens are loaded in the order they were bound
+    private static final ThreadPoolExecutor sExecutor = new ThreadPoolExecutor(
+            WORKER_COUNT, WORKER_COUNT, WORKER_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+            new PriorityBlockingQueue<>(), new ThreadFactory() {
+        private final AtomicInteger mCount = new AtomicInteger(1);
+
+        @Override
+        public Thread newThread(@NonNull Runnable r) {
+            return new Thread(() -> {
+                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                r.run();
+            }, "HttpImageGetter #" + mCount.getAndIncrement());
+        }
+    });
+    // Only accessed from the main thread
+    private static long sNextTaskPriority = 1;
+
+    static {
+        sExecutor.allowCoreThreadTimeOut(true);
+    }
+
     private final Handler mHandler = new Handler();
     private final Map<Object, ObjectInfo> mObjectInfos = new HashMap<>();
     private final Drawable mLoadingDrawable;
@@ -332,7 +498,7 @@ public class HttpImageGetter {
     private final int mMaxWidth;
     private final int mMaxHeight;
 
-    private boolean mDestroyed;
+    private volatile boolean mDestroyed;
 
     public HttpImageGetter(Context context) {
         mContext = context;
@@ -372,15 +538,33 @@ public class HttpImageGetter {
     }
 
     public void destroy() {
+        mDestroyed = true;
         for (ObjectInfo info : mObjectInfos.values()) {
             info.discardLoadedImages();
         }
         mObjectInfos.clear();
-        mDestroyed = true;
     }
 
-    public void encode(final Context context, final Object id, final String html) {
-        findOrCreateInfo(id).encode(context, html);
+    /**
+     * Starts encoding the given HTML on a background thread, so that binding it later on
+     * doesn't need to do that on the UI thread. Views bound before the encoding finished
+     * show the placeholder text in the meantime. Must be called on the main thread.
+     *
+     * The result is also cached on disk. {@code updatedAt} tells apart edited versions
+     * of the object; if it is null, the HTML itself is hashed instead.
+     */
+    public void encodeAsync(Context context, Object id, @Nullable Date updatedAt, String html,
+            CharSequence placeholderText) {
+        findOrCreateInfo(id).encodeAsync(context, updatedAt, html, placeholderText);
+    }
+
+    /**
+     * Like {@link #encodeAsync}, but encodes on the calling thread, which must not be the
+     * main thread.
+     */
+    public void encode(final Context context, final Object id, @Nullable final Date updatedAt,
+            final String html) {
+        findOrCreateInfo(id).encode(context, updatedAt, html);
     }
 
     public void bind(final TextView view, final String html, final Object id) {
@@ -397,95 +581,89 @@ public class HttpImageGetter {
     private ObjectInfo findOrCreateInfo(Object id) {
         ObjectInfo info = mObjectInfos.get(id);
         if (info == null) {
-            info = new ObjectInfo();
+            info = new ObjectInfo(id);
             mObjectInfos.put(id, info);
         }
         return info;
     }
 
-    private static class ImageGetterAsyncTask extends AsyncTask<PlaceholderDrawable, Void, Void> {
-        private final HttpImageGetter mImageGetter;
-        private final ObjectInfo mInfo;
-
-        public ImageGetterAsyncTask(HttpImageGetter getter, ObjectInfo info) {
-            mImageGetter = getter;
-            mInfo = info;
-        }
-
-        @Override
-        protected Void doInBackground(PlaceholderDrawable... params) {
-            for (PlaceholderDrawable placeholder : params) {
-                Drawable drawable = mImageGetter.loadImageForUrl(placeholder.getUrl());
-                if (drawable != null) {
-                    placeholder.addLoadedImage(drawable, mImageGetter.mHandler);
-                }
-            }
-            return null;
-        }
-
-        @Override
-        protected void onPostExecute(Void result) {
-            if (!isCancelled()) {
-                mInfo.onImageLoadDone();
-            }
-        }
-    }
-
     private Drawable loadImageForUrl(String source) {
         HttpUrl url = source != null ? HttpUrl.parse(source) : null;
         Bitmap bitmap = null;
 
         if (!mDestroyed && url != null) {
+            String cacheKey = ImageMemoryCache.makeKey(source, mMaxWidth, mMaxHeight);
+            ImageMemoryCache.Entry cachedEntry = ImageMemoryCache.acquire(cacheKey);
+            if (cachedEntry != null) {
+                return new LoadedBitmapDrawable(mContext.getResources(), cachedEntry);
+            }
+
+            File gifFile = getGifCacheFile(source);
+            if (gifFile.exists() && canLoadGif()) {
+                try {
+                    return createGifDrawable(gifFile);
+                } catch (IOException e) {
+                    gifFile.delete();
+                }
+            }
+
             Request request = new Request.Builder()
                     .url(url)
                     .build();
             try (Response response = mClient.newCall(request).execute()) {
-                if (response.body() != null) {
-                    byte[] responseBody = response.body().bytes();
-                    // ByteArrayInputStream supports marking, which is required for
-                    // URLConnection.guessContentTypeFromStream to work
-                    InputStream is = new ByteArrayInputStream(responseBody);
-                    MediaType mediaType = response.body().contentType();
+                ResponseBody body = response.body();
+                if (body != null) {
+                    MediaType mediaType = body.contentType();
                     String mime = mediaType != null ? mediaType.toString() : null;
                     if (mime == null) {
                         mime = URLConnection.guessContentTypeFromName(source);
                     }
                     if (mime == null) {
-                        mime = URLConnection.guessContentTypeFromStream(is);
+                        // Only the start of the body is buffered for detecting the type,
+                        // the actual decoding is done straight from the network stream
+                        byte[] prefix = response.peekBody(PEEK_SIZE).bytes();
+                        mime = URLConnection.guessContentTypeFromStream(
+                                new ByteArrayInputStream(prefix));
                     }
                     if (mime != null && mime.startsWith("image/svg")) {
-                        bitmap = renderSvgToBitmap(mContext.getResources(), is);
+                        bitmap = renderSvgToBitmap(mContext.getResources(), body.byteStream());
                     } else {
                         boolean isGif = mime != null && mime.startsWith("image/gif");
                         if (isGif && canLoadGif()) {
-                            GifDrawable d = new GifDrawable(responseBody);
-                            d.setBounds(0, 0, d.getIntrinsicWidth(), d.getIntrinsicHeight());
-                            return d;
+                            writeGifCacheFile(body.source(), gifFile);
+                            return createGifDrawable(gifFile);
                         } else if (!isGif) {
-                            bitmap = getBitmap(responseBody);
+                            bitmap = getBitmap(body.byteStream(), true);
                         }
                     }
                 }
             } catch (IOException e) {
                 Log.e(Gh4Application.LOG_TAG, "Couldn't display image " + url, e);
                 // fall through to showing the error bitmap
+            } catch (IllegalArgumentException e) {
+                // The decoder rejected the pooled bitmap after consuming the stream
+                bitmap = decodeWithoutPool(request);
             }
-        }
 
-        synchronized (this) {
-            if (mDestroyed && bitmap != null) {
-                bitmap.recycle();
-                bitmap = null;
+            if (bitmap != null) {
+                // Even if we were destroyed meanwhile, other screens might want the image
+                ImageMemoryCache.Entry entry = ImageMemoryCache.put(cacheKey, bitmap);
+                if (!mDestroyed) {
+                    return new LoadedBitmapDrawable(mContext.getResources(), entry);
+                }
+                ImageMemoryCache.release(entry);
             }
         }
 
-        if (bitmap == null) {
-            return mErrorDrawable;
-        }
+        return mErrorDrawable;
+    }
 
-        BitmapDrawable drawable = new LoadedBitmapDrawable(mContext.getResources(), bitmap);
-        drawable.setBounds(0, 0, bitmap.getWidth(), bitmap.getHeight());
-        return drawable;
+    private static void discardImage(Drawable d) {
+        if (d instanceof LoadedBitmapDrawable) {
+            ((LoadedBitmapDrawable) d).release();
+        } else if (d instanceof GifDrawable) {
+            ((GifDrawable) d).recycle();
+        }
     }
 
     private boolean canLoadGif() {
@@ -502,23 +680,138 @@ public class HttpImageGetter {
         }
     }
 
-    private Bitmap getBitmap(final byte[] image) {
-        final BitmapFactory.Options options = new BitmapFactory.Options();
+    private Bitmap decodeWithoutPool(Request request) {
+        // The image client's cache usually serves this without going to the network again
+        try (Response response = mClient.newCall(request).execute()) {
+            ResponseBody body = response.body();
+            return body != null ? getBitmap(body.byteStream(), false) : null;
+        } catch (IOException | IllegalArgumentException e) {
+            Log.e(Gh4Application.LOG_TAG, "Couldn't display image " + request.url(), e);
+            return null;
+        }
+    }
+
+    private Bitmap getBitmap(final InputStream is, boolean usePool) {
+        BufferedInputStream bufferedStream = new BufferedInputStream(is, (int) PEEK_SIZE);
+        BitmapFactory.Options options = decodeBounds(bufferedStream, mMaxWidth, mMaxHeight);
+        if (options == null) {
+            Log.w(Gh4Application.LOG_TAG, "Skipping image with unknown dimensions");
+            return null;
+        }
+        return BitmapPool.decodeStream(bufferedStream, options, usePool);
+    }
+
+    /**
+     * Reads the dimensions of the image in the given stream and chooses a sample size that
+     * fits it into the given size. The stream is rewound to its start afterwards.
+     *
+     * @return Options to decode the image with, or null if its dimensions couldn't be
+     * determined; decoding such an image unsampled could run out of memory
+     */
+    @VisibleForTesting
+    static BitmapFactory.Options decodeBounds(BufferedInputStream is, int maxWidth,
+            int maxHeight) {
+        BitmapFactory.Options options = new BitmapFactory.Options();
         options.inJustDecodeBounds = true;
-        BitmapFactory.decodeByteArray(image, 0, image.length, options);
+        is.mark(MAX_HEADER_SIZE);
+        BitmapFactory.decodeStream(new UnmarkableInputStream(is), null, options);
+        try {
+            is.reset();
+        } catch (IOException e) {
+            // The header was further into the file than we're willing to buffer
+            return null;
+        }
+        if (options.outWidth <= 0 || options.outHeight <= 0) {
+            return null;
+        }
 
+        int width = options.outWidth, height = options.outHeight;
         int scale = 1;
-        while (options.outWidth >= mMaxWidth || options.outHeight >= mMaxHeight) {
-            options.outWidth /= 2;
-            options.outHeight /= 2;
+        while (width >= maxWidth || height >= maxHeight) {
+            width /= 2;
+            height /= 2;
             scale *= 2;
         }
 
-        options.inJustDecodeBounds = false;
         options.inDither = false;
         options.inSampleSize = scale;
+        return options;
+    }
+
+    // Keeps the decoder from replacing our mark, and from closing the underlying stream
+    private static class UnmarkableInputStream extends FilterInputStream {
+        UnmarkableInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        @Override
+        public synchronized void mark(int readlimit) {
+        }
+
+        @Override
+        public synchronized void reset() throws IOException {
+            throw new IOException("mark/reset not supported");
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    private File getGifCacheFile(String url) {
+        File dir = new File(mContext.getCacheDir(), GIF_CACHE_DIR_NAME);
+        // Like BlobCache, use a digest so different URLs don't share a file
+        return new File(dir, ApiHelpers.md5(url));
+    }
+
+    private static void writeGifCacheFile(BufferedSource source, File file) throws IOException {
+        File dir = file.getParentFile();
+        if (!dir.exists() && !dir.mkdirs()) {
+            throw new IOException("Could not create " + dir);
+        }
+        File tempFile = File.createTempFile(file.getName(), ".tmp", dir);
+        try (BufferedSink sink = Okio.buffer(Okio.sink(tempFile))) {
+            sink.writeAll(source);
+        } catch (IOException e) {
+            tempFile.delete();
+            throw e;
+        }
+        synchronized (HttpImageGetter.class) {
+            if (!tempFile.renameTo(file)) {
+                tempFile.delete();
+                throw new IOException("Could not write " + file);
+            }
+            trimGifCache(dir);
+        }
+    }
+
+    private static void trimGifCache(File dir) {
+        File[] files = dir.listFiles();
+        if (files == null) {
+            return;
+        }
+        // createGifDrawable() touches files without holding the lock
+        FileUtils.sortByLastModified(files, true);
+        long size = 0;
+        for (File file : files) {
+            size += file.length();
+            if (size > MAX_GIF_CACHE_SIZE) {
+                file.delete();
+            }
+        }
+    }
 
-        return BitmapFactory.decodeByteArray(image, 0, image.length, options);
+    private static GifDrawable createGifDrawable(File file) throws IOException {
+        // Keep recently shown GIFs from being trimmed
+        file.setLastModified(System.currentTimeMillis());
+        GifDrawable d = new GifDrawable(file);
+        d.setBounds(0, 0, d.getIntrinsicWidth(), d.getIntrinsicHeight());
+        return d;
     }
 
     private Bitmap renderSvgToBitmap(Resources res, InputStream is) {
@@ -560,7 +853,7 @@ public class HttpImageGetter {
                     }
                 }
 
-                Bitmap bitmap = Bitmap.createBitmap(docWidth, docHeight, Bitmap.Config.ARGB_8888);
+                Bitmap bitmap = BitmapPool.get(docWidth, docHeight, Bitmap.Config.ARGB_8888);
                 Canvas canvas = new Canvas(bitmap);
                 if (density != null) {
                     canvas.scale(density, density);
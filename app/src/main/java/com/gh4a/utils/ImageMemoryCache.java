@@ -0,0 +1,98 @@
+package com.gh4a.utils;
+
+import android.graphics.Bitmap;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * App wide memory cache of decoded inline images, shared by all {@link HttpImageGetter}
+ * instances. Entries are reference counted: users acquire an entry while they display its
+ * bitmap and release it afterwards, and a bitmap is only handed to the {@link BitmapPool}
+ * once it is both evicted and no longer used by anyone.
+ */
+class ImageMemoryCache {
+    private static final long MAX_SIZE = Runtime.getRuntime().maxMemory() / 8;
+
+    static class Entry {
+        private final String mKey;
+        private final Bitmap mBitmap;
+        private final int mSize;
+        private int mRefCount;
+        private boolean mEvicted;
+
+        private Entry(String key, Bitmap bitmap) {
+            mKey = key;
+            mBitmap = bitmap;
+            mSize = bitmap.getAllocationByteCount();
+        }
+
+        public Bitmap getBitmap() {
+            return mBitmap;
+        }
+    }
+
+    // Access ordered, so iteration starts with the least recently used entry
+    private static final LinkedHashMap<String, Entry> sEntries =
+            new LinkedHashMap<>(32, 0.75f, true);
+    private static long sSize;
+
+    private ImageMemoryCache() {
+    }
+
+    public static String makeKey(String url, int maxWidth, int maxHeight) {
+        return url + "@" + maxWidth + "x" + maxHeight;
+    }
+
+    /**
+     * Returns the entry for the given key with its reference count incremented,
+     * or null if there is none.
+     */
+    public static synchronized Entry acquire(String key) {
+        Entry entry = sEntries.get(key);
+        if (entry != null) {
+            entry.mRefCount++;
+        }
+        return entry;
+    }
+
+    /**
+     * Adds a bitmap to the cache and returns its entry, already acquired for the caller.
+     * If another thread added the same image in the meantime, that one is returned instead
+     * and the passed bitmap is given to the pool.
+     */
+    public static synchronized Entry put(String key, Bitmap bitmap) {
+        Entry existing = acquire(key);
+        if (existing != null) {
+            BitmapPool.put(bitmap);
+            return existing;
+        }
+
+        Entry entry = new Entry(key, bitmap);
+        entry.mRefCount = 1;
+        sEntries.put(key, entry);
+        sSize += entry.mSize;
+        trimToSize();
+        return entry;
+    }
+
+    public static synchronized void release(Entry entry) {
+        entry.mRefCount--;
+        if (entry.mRefCount == 0 && entry.mEvicted) {
+            BitmapPool.put(entry.mBitmap);
+        }
+    }
+
+    private static void trimToSize() {
+        Iterator<Entry> iter = sEntries.values().iterator();
+        while (sSize > MAX_SIZE && iter.hasNext()) {
+            Entry entry = iter.next();
+            iter.remove();
+            sSize -= entry.mSize;
+            entry.mEvicted = true;
+            if (entry.mRefCount == 0) {
+                BitmapPool.put(entry.mBitmap);
+            }
+        }
+    }
+}
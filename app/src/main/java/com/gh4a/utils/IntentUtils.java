@@ -238,47 +238,6 @@ public class IntentUtils {
         return intent != null && intent.getBooleanExtra(EXTRA_NEW_TASK, false);
     }
 
-    public static boolean hasCompressedExtra(Intent intent, String key) {
-        return intent.hasExtra(key) || intent.hasExtra(compressedDataKey(key));
-    }
-
-    public static void removeCompressedExtra(Intent intent, String key) {
-        intent.removeExtra(key);
-        intent.removeExtra(compressedDataKey(key));
-    }
-
-    public static void putCompressedArrayListExtra(Intent intent, String key, ArrayList<?> list, int thresholdBytes) {
-        Parcel parcel = Parcel.obtain();
-        parcel.writeList(list);
-        byte[] compressedData = compressDataIfNeeded(parcel.marshall(), thresholdBytes);
-        parcel.recycle();
-
-        if (compressedData != null) {
-            intent.putExtra(compressedDataKey(key), compressedData);
-        } else {
-            intent.putExtra(key, list);
-        }
-    }
-
-    public static <T extends Parcelable> ArrayList<T> getCompressedArrayListExtra(Intent intent, String key) {
-        Bundle extras = intent.getExtras();
-        ArrayList<T> result = readCompressedDataIfPresent(extras, key, Parcel::readArrayList);
-        if (result == null) {
-            result = extras.getParcelableArrayList(key);
-        }
-        return result;
-    }
-
-    public static void putCompressedParcelableExtra(Intent intent, String key,
-            Parcelable parcelable, int thresholdBytes) {
-        byte[] compressedData = compressParcelableIfNeeded(parcelable, thresholdBytes);
-        if (compressedData != null) {
-            intent.putExtra(compressedDataKey(key), compressedData);
-        } else {
-            intent.putExtra(key, parcelable);
-        }
-    }
-
     public static void putParcelableToBundleCompressed(Bundle bundle, String key,
             Parcelable parcelable, int thresholdBytes) {
         byte[] compressedData = compressParcelableIfNeeded(parcelable, thresholdBytes);
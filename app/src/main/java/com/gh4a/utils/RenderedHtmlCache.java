@@ -0,0 +1,168 @@
+package com.gh4a.utils;
+
+import android.content.Context;
+import android.text.Html.ImageGetter;
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import com.gh4a.R;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Date;
+
+/**
+ * Stores the results of {@link HtmlUtils#encode} on disk, so comment bodies that were
+ * rendered before don't need to be parsed again when opening an issue or pull request
+ * once more, even after a process restart. Entries are keyed by object id and update
+ * time (or a hash of the HTML for objects without one), so edited comments are rendered
+ * again, and by everything the rendering depends on besides the HTML: the theme colors,
+ * the screen density and the font scale.
+ *
+ * Only the size bookkeeping is synchronized. Entries are written to a temporary file and
+ * renamed, so readers never see partial entries and callers working on different objects
+ * don't wait for each other. Does disk I/O, so must not be called on the main thread.
+ */
+class RenderedHtmlCache {
+    private static final String TAG = "RenderedHtmlCache";
+    private static final String DIR_NAME = "rendered-html";
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final long MAX_SIZE = 5 * 1024 * 1024;
+
+    // Guarded by the class lock
+    private static long sSize = -1;
+
+    private RenderedHtmlCache() {
+    }
+
+    public static CharSequence get(Context context, Object id, @Nullable Date updatedAt,
+            String html, ImageGetter imageGetter) {
+        File file = getFile(context, id, updatedAt, html);
+        if (!file.exists()) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(file)))) {
+            CharSequence encoded = HtmlUtils.readEncoded(context, in, imageGetter);
+            if (encoded == null) {
+                // Written by an older app version
+                deleteFile(file);
+                return null;
+            }
+            // Keep recently used entries from being trimmed
+            file.setLastModified(System.currentTimeMillis());
+            return encoded;
+        } catch (IOException | RuntimeException e) {
+            Log.w(TAG, "Could not read cached HTML " + file, e);
+            deleteFile(file);
+            return null;
+        }
+    }
+
+    public static void put(Context context, Object id, @Nullable Date updatedAt, String html,
+            CharSequence encoded) {
+        File dir = getDir(context);
+        if (!dir.exists() && !dir.mkdirs()) {
+            return;
+        }
+
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(buffer)) {
+            if (!HtmlUtils.writeEncoded(encoded, out)) {
+                return;
+            }
+        } catch (IOException e) {
+            return;
+        }
+
+        File file = getFile(context, id, updatedAt, html);
+        File tempFile = null;
+        try {
+            tempFile = File.createTempFile(file.getName(), TEMP_SUFFIX, dir);
+            try (FileOutputStream out = new FileOutputStream(tempFile)) {
+                buffer.writeTo(out);
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "Could not write cached HTML " + file, e);
+            if (tempFile != null) {
+                tempFile.delete();
+            }
+            return;
+        }
+
+        synchronized (RenderedHtmlCache.class) {
+            ensureSizeKnown(dir);
+            deleteFile(file);
+            if (tempFile.renameTo(file)) {
+                sSize += file.length();
+                trimToSize(dir);
+            } else {
+                tempFile.delete();
+            }
+        }
+    }
+
+    private static File getDir(Context context) {
+        return new File(context.getCacheDir(), DIR_NAME);
+    }
+
+    private static File getFile(Context context, Object id, @Nullable Date updatedAt,
+            String html) {
+        String version = updatedAt != null
+                ? Long.toHexString(updatedAt.getTime()) : ApiHelpers.md5(html);
+        int themeColor = UiUtils.resolveColor(context, R.attr.colorCodeBackground);
+        int density = context.getResources().getDisplayMetrics().densityDpi;
+        int fontScale = Math.round(context.getResources().getConfiguration().fontScale * 100);
+        return new File(getDir(context), id + "-" + version + "-"
+                + Integer.toHexString(themeColor) + "-" + density + "-" + fontScale);
+    }
+
+    private static void deleteFile(File file) {
+        synchronized (RenderedHtmlCache.class) {
+            long length = file.length();
+            if (file.delete() && sSize >= 0) {
+                sSize -= length;
+            }
+        }
+    }
+
+    private static void ensureSizeKnown(File dir) {
+        if (sSize >= 0) {
+            return;
+        }
+        sSize = 0;
+        File[] files = dir.listFiles(file -> !file.getName().endsWith(TEMP_SUFFIX));
+        if (files != null) {
+            for (File file : files) {
+                sSize += file.length();
+            }
+        }
+    }
+
+    private static void trimToSize(File dir) {
+        if (sSize <= MAX_SIZE) {
+            return;
+        }
+        // Leave alone files other callers are still writing
+        File[] files = dir.listFiles(file -> !file.getName().endsWith(TEMP_SUFFIX));
+        if (files == null) {
+            return;
+        }
+        // Reads touch files without holding the lock
+        FileUtils.sortByLastModified(files, false);
+        // Trim to 90% of the budget, so we don't need to do that on every write
+        for (File file : files) {
+            if (sSize <= MAX_SIZE * 9 / 10) {
+                break;
+            }
+            deleteFile(file);
+        }
+    }
+}
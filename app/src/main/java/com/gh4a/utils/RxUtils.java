@@ -22,6 +22,7 @@ import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
 
+import io.reactivex.FlowableTransformer;
 import io.reactivex.Single;
 import io.reactivex.SingleSource;
 import io.reactivex.SingleTransformer;
@@ -34,15 +35,21 @@ import retrofit2.Response;
 
 public class RxUtils {
     public static <T> SingleTransformer<List<T>, List<T>> filter(Predicate<T> predicate) {
-        return upstream -> upstream.map(list -> {
-            List<T> result = new ArrayList<>();
-            for (T item : list) {
-                if (predicate.test(item)) {
-                    result.add(item);
-                }
+        return upstream -> upstream.map(list -> filterList(list, predicate));
+    }
+
+    public static <T> FlowableTransformer<List<T>, List<T>> filterPages(Predicate<T> predicate) {
+        return upstream -> upstream.map(list -> filterList(list, predicate));
+    }
+
+    private static <T> List<T> filterList(List<T> list, Predicate<T> predicate) throws Exception {
+        List<T> result = new ArrayList<>();
+        for (T item : list) {
+            if (predicate.test(item)) {
+                result.add(item);
             }
-            return result;
-        });
+        }
+        return result;
     }
 
     public static <T> SingleTransformer<List<T>, Optional<T>> filterAndMapToFirst(Predicate<T> predicate) {
@@ -57,13 +64,20 @@ public class RxUtils {
     }
 
     public static <T, R> SingleTransformer<List<T>, List<R>> mapList(Function<T, R> transformer) {
-        return upstream -> upstream.map(list -> {
-            List<R> result = new ArrayList<>();
-            for (T item : list) {
-                result.add(transformer.apply(item));
-            }
-            return result;
-        });
+        return upstream -> upstream.map(list -> mapListItems(list, transformer));
+    }
+
+    public static <T, R> FlowableTransformer<List<T>, List<R>> mapPages(Function<T, R> transformer) {
+        return upstream -> upstream.map(list -> mapListItems(list, transformer));
+    }
+
+    private static <T, R> List<R> mapListItems(List<T> list, Function<T, R> transformer)
+            throws Exception {
+        List<R> result = new ArrayList<>();
+        for (T item : list) {
+            result.add(transformer.apply(item));
+        }
+        return result;
     }
 
     public static <T> SingleTransformer<List<T>, List<T>> sortList(Comparator<? super T> comparator) {
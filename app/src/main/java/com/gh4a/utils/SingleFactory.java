@@ -29,6 +29,7 @@ import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 
+import androidx.annotation.VisibleForTesting;
 import io.reactivex.Single;
 import okhttp3.OkHttpClient;
 import retrofit2.Retrofit;
@@ -68,7 +69,8 @@ public class SingleFactory {
                 .map(SingleFactory::notificationsToResult);
     }
 
-    private static NotificationListLoadResult notificationsToResult(
+    @VisibleForTesting
+    static NotificationListLoadResult notificationsToResult(
             List<NotificationThread> notifications) {
         // group notifications by repo
         final HashMap<Repository, ArrayList<NotificationThread>> notificationsByRepo = new HashMap<>();
@@ -172,9 +174,7 @@ public class SingleFactory {
                 }
             });
 
-            OkHttpClient client = ServiceFactory.getHttpClientBuilder()
-                    .followRedirects(false)
-                    .build();
+            OkHttpClient client = ServiceFactory.getNoRedirectHttpClient();
 
             sFeedService = new Retrofit.Builder()
                     .addCallAdapterFactory(RxJava2CallAdapterFactory.create())
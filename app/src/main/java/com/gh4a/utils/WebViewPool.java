@@ -0,0 +1,68 @@
+package com.gh4a.utils;
+
+import android.annotation.SuppressLint;
+import android.app.Activity;
+import android.content.Context;
+import android.content.MutableContextWrapper;
+import android.os.Looper;
+import android.view.ViewGroup;
+import android.webkit.WebView;
+
+/**
+ * Keeps one WebView around that was created ahead of time, so viewers don't need to pay
+ * for WebView construction when opening. The WebView is created with a context wrapper,
+ * which is pointed to the activity that obtains it.
+ *
+ * Viewers are never handed a previously used WebView, as that would leak page state and
+ * javascript interfaces between them; a new one is warmed up once the main thread is idle.
+ */
+public class WebViewPool {
+    // Only holds the application context while not in use
+    @SuppressLint("StaticFieldLeak")
+    private static WebView sWarmWebView;
+    private static boolean sWarmUpScheduled;
+
+    private WebViewPool() {
+    }
+
+    public static WebView obtain(Activity activity) {
+        WebView webView = sWarmWebView;
+        sWarmWebView = null;
+        if (webView != null) {
+            ((MutableContextWrapper) webView.getContext()).setBaseContext(activity);
+        } else {
+            webView = new WebView(new MutableContextWrapper(activity));
+        }
+        scheduleWarmUp(activity.getApplicationContext());
+        return webView;
+    }
+
+    public static void release(WebView webView) {
+        ViewGroup parent = (ViewGroup) webView.getParent();
+        if (parent != null) {
+            parent.removeView(webView);
+        }
+        webView.destroy();
+    }
+
+    public static void clear() {
+        if (sWarmWebView != null) {
+            sWarmWebView.destroy();
+            sWarmWebView = null;
+        }
+    }
+
+    private static void scheduleWarmUp(Context appContext) {
+        if (sWarmWebView != null || sWarmUpScheduled) {
+            return;
+        }
+        sWarmUpScheduled = true;
+        Looper.myQueue().addIdleHandler(() -> {
+            sWarmUpScheduled = false;
+            if (sWarmWebView == null) {
+                sWarmWebView = new WebView(new MutableContextWrapper(appContext));
+            }
+            return false;
+        });
+    }
+}
@@ -39,10 +39,49 @@ import com.gh4a.R;
 import com.gh4a.utils.UiUtils;
 
 public class FindActionModeCallback implements ActionMode.Callback, TextWatcher, WebView.FindListener {
+    /**
+     * Searches the content for the action mode. Results are reported to the listener like
+     * {@link WebView} does it.
+     */
+    public interface Finder {
+        void setFindListener(WebView.FindListener listener);
+        void findAllAsync(String find);
+        void findNext(boolean forward);
+        void clearMatches();
+    }
+
+    private static class WebViewFinder implements Finder {
+        private final WebView mWebView;
+
+        WebViewFinder(WebView webView) {
+            mWebView = webView;
+        }
+
+        @Override
+        public void setFindListener(WebView.FindListener listener) {
+            mWebView.setFindListener(listener);
+        }
+
+        @Override
+        public void findAllAsync(String find) {
+            mWebView.findAllAsync(find);
+        }
+
+        @Override
+        public void findNext(boolean forward) {
+            mWebView.findNext(forward);
+        }
+
+        @Override
+        public void clearMatches() {
+            mWebView.clearMatches();
+        }
+    }
+
     private View mCustomView;
     private EditText mEditText;
     private TextView mMatches;
-    private WebView mWebView;
+    private Finder mFinder;
     private MenuItem mPrevItem;
     private MenuItem mNextItem;
     private boolean mHasStartedSearch;
@@ -83,11 +122,20 @@ public class FindActionModeCallback implements ActionMode.Callback, TextWatcher,
             throw new AssertionError("WebView supplied to "
                     + "FindActionModeCallback cannot be null");
         }
-        if (mWebView != null) {
-            mWebView.setFindListener(null);
+        setFinder(new WebViewFinder(webView));
+    }
+
+    /**
+     * Set what to search, for content that isn't shown in a WebView.
+     *
+     * @param finder the finder searching the content
+     */
+    public void setFinder(@NonNull Finder finder) {
+        if (mFinder != null) {
+            mFinder.setFindListener(null);
         }
-        mWebView = webView;
-        mWebView.setFindListener(this);
+        mFinder = finder;
+        mFinder.setFindListener(this);
     }
 
     @Override
@@ -108,34 +156,34 @@ public class FindActionModeCallback implements ActionMode.Callback, TextWatcher,
      *             If {@code false}, find the previous match, up in the document.
      */
     private void findNext(boolean next) {
-        if (mWebView == null) {
+        if (mFinder == null) {
             throw new AssertionError(
-                    "No WebView for FindActionModeCallback::findNext");
+                    "No Finder for FindActionModeCallback::findNext");
         }
         if (!mHasStartedSearch) {
             findAll();
         } else if (mNumberOfMatches == 0) {
             // There are no matches, so moving to the next match will not do anything.
         } else {
-            mWebView.findNext(next);
+            mFinder.findNext(next);
         }
     }
 
     /**
-     * Highlight all the instances of the string from mEditText in mWebView.
+     * Highlight all the instances of the string from mEditText in mFinder.
      */
     public void findAll() {
-        if (mWebView == null) {
+        if (mFinder == null) {
             throw new AssertionError(
-                    "No WebView for FindActionModeCallback::findAll");
+                    "No Finder for FindActionModeCallback::findAll");
         }
         String find = mEditText.getText().toString();
         mNumberOfMatches = 0;
         if (find.isEmpty()) {
-            mWebView.clearMatches();
+            mFinder.clearMatches();
             mMatches.setVisibility(View.GONE);
         } else {
-            mWebView.findAllAsync(find);
+            mFinder.findAllAsync(find);
             mMatches.setVisibility(View.INVISIBLE);
             mHasStartedSearch = true;
         }
@@ -173,7 +221,7 @@ public class FindActionModeCallback implements ActionMode.Callback, TextWatcher,
     @Override
     public void onDestroyActionMode(ActionMode mode) {
         UiUtils.hideImeForView(mEditText);
-        mWebView.clearMatches();
+        mFinder.clearMatches();
     }
 
     @Override
@@ -183,11 +231,11 @@ public class FindActionModeCallback implements ActionMode.Callback, TextWatcher,
 
     @Override
     public boolean onActionItemClicked(ActionMode mode, MenuItem item) {
-        if (mWebView == null) {
+        if (mFinder == null) {
             throw new AssertionError(
-                    "No WebView for FindActionModeCallback::onActionItemClicked");
+                    "No Finder for FindActionModeCallback::onActionItemClicked");
         }
-        UiUtils.hideImeForView(mWebView);
+        UiUtils.hideImeForView(mEditText);
         switch(item.getItemId()) {
             case R.id.find_prev:
                 findNext(false);
@@ -16,6 +16,10 @@ public class LinkSpan extends ClickableSpan {
         mUrl = url;
     }
 
+    public String getUrl() {
+        return mUrl;
+    }
+
     @Override
     public void onClick(@NonNull View widget) {
         Uri clickedUri = Uri.parse(mUrl);
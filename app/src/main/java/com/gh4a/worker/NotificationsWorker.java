@@ -9,13 +9,6 @@ import android.content.Intent;
 import android.content.SharedPreferences;
 import android.content.res.Resources;
 import android.graphics.Bitmap;
-import android.graphics.Canvas;
-import android.graphics.Color;
-import android.graphics.Paint;
-import android.graphics.PorterDuff;
-import android.graphics.PorterDuffXfermode;
-import android.graphics.Rect;
-import android.graphics.RectF;
 import android.os.Build;
 import androidx.annotation.NonNull;
 import androidx.core.app.NotificationCompat;
@@ -394,27 +387,8 @@ public class NotificationsWorker extends Worker {
     }
 
     private Bitmap loadRoundUserAvatar(User user) {
-        Bitmap avatar = AvatarHandler.loadUserAvatarSynchronously(getApplicationContext(), user);
-        if (avatar == null) {
-            return null;
-        }
-
-        final Bitmap output = Bitmap.createBitmap(avatar.getWidth(), avatar.getHeight(),
-                Bitmap.Config.ARGB_8888);
-        final Canvas canvas = new Canvas(output);
-
-        final Paint paint = new Paint();
-        final Rect rect = new Rect(0, 0, avatar.getWidth(), avatar.getHeight());
-
-        paint.setAntiAlias(true);
-        canvas.drawARGB(0, 0, 0, 0);
-        paint.setColor(Color.BLACK);
-        canvas.drawOval(new RectF(rect), paint);
-
-        paint.setXfermode(new PorterDuffXfermode(PorterDuff.Mode.SRC_IN));
-        canvas.drawBitmap(avatar, rect, rect, paint);
-
-        return output;
+        // Avatars are already rounded when they're loaded
+        return AvatarHandler.loadUserAvatarSynchronously(getApplicationContext(), user);
     }
 
     private static SharedPreferences getPrefs(Context context) {
@@ -0,0 +1,39 @@
+package com.gh4a;
+
+import org.junit.Test;
+
+import okhttp3.HttpUrl;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class HttpCacheManagerTest {
+    @Test
+    public void diffBearingEndpoints__useRawPartition() {
+        assertThat(partition("/repos/o/r/commits/abc123"), is(HttpCacheManager.Partition.RAW));
+        assertThat(partition("/repos/o/r/compare/a...b"), is(HttpCacheManager.Partition.RAW));
+        assertThat(partition("/repos/o/r/pulls/1/files"), is(HttpCacheManager.Partition.RAW));
+        assertThat(partition("/repos/o/r/contents/src/Main.java"),
+                is(HttpCacheManager.Partition.RAW));
+        assertThat(partition("/repos/o/r/git/blobs/abc123"), is(HttpCacheManager.Partition.RAW));
+        assertThat(partition("/gists/abc123"), is(HttpCacheManager.Partition.RAW));
+        assertThat(partition("/gists/abc123/def456"), is(HttpCacheManager.Partition.RAW));
+    }
+
+    @Test
+    public void otherEndpoints__useApiPartition() {
+        assertThat(partition("/repos/o/r"), is(HttpCacheManager.Partition.API));
+        assertThat(partition("/repos/o/r/commits"), is(HttpCacheManager.Partition.API));
+        assertThat(partition("/repos/o/r/commits/abc123/comments"),
+                is(HttpCacheManager.Partition.API));
+        assertThat(partition("/repos/o/r/pulls/1"), is(HttpCacheManager.Partition.API));
+        assertThat(partition("/repos/o/r/pulls/1/comments"), is(HttpCacheManager.Partition.API));
+        assertThat(partition("/gists/starred"), is(HttpCacheManager.Partition.API));
+        assertThat(partition("/gists/abc123/comments"), is(HttpCacheManager.Partition.API));
+        assertThat(partition("/users/someone"), is(HttpCacheManager.Partition.API));
+    }
+
+    private static HttpCacheManager.Partition partition(String path) {
+        return HttpCacheManager.Partition.forUrl(HttpUrl.get("https://api.github.com" + path));
+    }
+}
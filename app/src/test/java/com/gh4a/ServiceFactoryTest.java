@@ -0,0 +1,61 @@
+package com.gh4a;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import okhttp3.HttpUrl;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+@RunWith(RobolectricTestRunner.class)
+public class ServiceFactoryTest {
+    @Test
+    public void repoEndpoints__areScopedToRepo() {
+        assertThat(scopes("/repos/Owner/Repo/issues/1/comments", "me"),
+                is(Collections.singletonList("repos/owner/repo")));
+        assertThat(scopes("/repos/owner/repo", null),
+                is(Collections.singletonList("repos/owner/repo")));
+    }
+
+    @Test
+    public void userAndOrgEndpoints__areScopedToUser() {
+        assertThat(scopes("/users/SomeOne/followers", "me"),
+                is(Collections.singletonList("users/someone")));
+        assertThat(scopes("/orgs/some-org/members", "me"),
+                is(Collections.singletonList("users/some-org")));
+    }
+
+    @Test
+    public void following__touchesOwnAndFollowedUser() {
+        assertThat(scopes("/user/following/someone", "Me"),
+                is(Arrays.asList("users/me", "users/someone")));
+    }
+
+    @Test
+    public void starring__touchesOwnUserAndRepo() {
+        assertThat(scopes("/user/starred/owner/repo", "me"),
+                is(Arrays.asList("users/me", "repos/owner/repo")));
+    }
+
+    @Test
+    public void ownUserEndpoints__withoutLogin__haveNoUserScope() {
+        assertThat(scopes("/user/following/someone", null),
+                is(Collections.singletonList("users/someone")));
+    }
+
+    @Test
+    public void otherEndpoints__areScopedToTopLevelResourceAndOwnUser() {
+        assertThat(scopes("/gists/abc/star", "me"), is(Arrays.asList("gists", "users/me")));
+    }
+
+    private static List<String> scopes(String path, String ownLogin) {
+        return ServiceFactory.getResourceScopes(
+                HttpUrl.get("https://api.github.com" + path), ownLogin);
+    }
+}
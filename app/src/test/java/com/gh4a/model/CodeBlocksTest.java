@@ -0,0 +1,89 @@
+package com.gh4a.model;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+@RunWith(RobolectricTestRunner.class)
+public class CodeBlocksTest {
+    @Test
+    public void emptyFile__hasSingleEmptyLine() {
+        CodeBlocks blocks = new CodeBlocks("");
+        assertThat(blocks.getLineCount(), is(1));
+        assertThat(blocks.getBlockCount(), is(1));
+        assertThat(blocks.getBlockHtml(0), is(""));
+    }
+
+    @Test
+    public void trailingNewline__doesNotStartAnotherLine() {
+        assertBlocks(new CodeBlocks("a\nb\n"), 2, "a\nb");
+        assertBlocks(new CodeBlocks("a\nb"), 2, "a\nb");
+        assertBlocks(new CodeBlocks("\n"), 1, "");
+    }
+
+    @Test
+    public void emptyLastLine__isKept() {
+        assertBlocks(new CodeBlocks("a\nb\n\n"), 3, "a\nb\n");
+    }
+
+    @Test
+    public void exactMultipleOfBlockSize__hasNoEmptyBlock() {
+        String oneBlock = makeLines(1, CodeBlocks.LINES_PER_BLOCK);
+        String twoBlocks = makeLines(1, 2 * CodeBlocks.LINES_PER_BLOCK);
+
+        assertBlocks(new CodeBlocks(oneBlock), CodeBlocks.LINES_PER_BLOCK,
+                trimNewline(oneBlock));
+        assertBlocks(new CodeBlocks(trimNewline(oneBlock)), CodeBlocks.LINES_PER_BLOCK,
+                trimNewline(oneBlock));
+        assertBlocks(new CodeBlocks(twoBlocks), 2 * CodeBlocks.LINES_PER_BLOCK,
+                trimNewline(makeLines(1, CodeBlocks.LINES_PER_BLOCK)),
+                trimNewline(makeLines(CodeBlocks.LINES_PER_BLOCK + 1, CodeBlocks.LINES_PER_BLOCK)));
+    }
+
+    @Test
+    public void lineAfterFullBlock__startsNewBlock() {
+        String data = makeLines(1, CodeBlocks.LINES_PER_BLOCK + 1);
+        CodeBlocks blocks = new CodeBlocks(data);
+        assertBlocks(blocks, CodeBlocks.LINES_PER_BLOCK + 1,
+                trimNewline(makeLines(1, CodeBlocks.LINES_PER_BLOCK)),
+                "line " + (CodeBlocks.LINES_PER_BLOCK + 1));
+        assertThat(blocks.getFirstLine(0), is(1));
+        assertThat(blocks.getFirstLine(1), is(CodeBlocks.LINES_PER_BLOCK + 1));
+    }
+
+    @Test
+    public void blockHtml__isEscaped() {
+        assertThat(new CodeBlocks("if (a < b && c > d) {\n}").getBlockHtml(0),
+                is("if (a &lt; b &amp;&amp; c &gt; d) {\n}"));
+    }
+
+    @Test
+    public void blockHtml__isEmptyForInvalidBlocks() {
+        CodeBlocks blocks = new CodeBlocks("a\nb");
+        assertThat(blocks.getBlockHtml(-1), is(""));
+        assertThat(blocks.getBlockHtml(1), is(""));
+    }
+
+    private static void assertBlocks(CodeBlocks blocks, int lineCount, String... blockHtml) {
+        assertThat(blocks.getLineCount(), is(lineCount));
+        assertThat(blocks.getBlockCount(), is(blockHtml.length));
+        for (int i = 0; i < blockHtml.length; i++) {
+            assertThat("Block " + i, blocks.getBlockHtml(i), is(blockHtml[i]));
+        }
+    }
+
+    private static String makeLines(int firstLine, int count) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = firstLine; i < firstLine + count; i++) {
+            sb.append("line ").append(i).append('\n');
+        }
+        return sb.toString();
+    }
+
+    private static String trimNewline(String lines) {
+        return lines.substring(0, lines.length() - 1);
+    }
+}
@@ -0,0 +1,151 @@
+package com.gh4a.model;
+
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class ParsedDiffTest {
+    private static final String DIFF = "@@ -10,3 +20,4 @@\n"
+            + " a\n"
+            + "-b\n"
+            + "+c\n"
+            + "+d\n"
+            + " e\n"
+            + "@@ -30,2 +40,2 @@\n"
+            + " x";
+
+    @Test
+    public void nullDiff__hasNoLines() {
+        ParsedDiff diff = new ParsedDiff(null);
+        assertThat(diff.getLineCount(), is(0));
+        assertThat(diff.getMaxLineLength(), is(0));
+        assertThat(diff.findLine(1, true), is(-1));
+    }
+
+    @Test
+    public void emptyDiff__hasSingleEmptyLine() {
+        ParsedDiff diff = new ParsedDiff("");
+        assertThat(diff.getLineCount(), is(1));
+        assertThat(diff.getLine(0), is(""));
+        assertThat(diff.getLineType(0), is(ParsedDiff.TYPE_CONTEXT));
+        assertThat(diff.getLeftLine(0), is(-1));
+        assertThat(diff.getRightLine(0), is(-1));
+        assertThat(diff.findLine(1, false), is(-1));
+    }
+
+    @Test
+    public void trailingNewlines__areDropped() {
+        String diff = "@@ -1,1 +1,1 @@\n-a\n+b";
+        assertLines(new ParsedDiff(diff), "@@ -1,1 +1,1 @@", "-a", "+b");
+        assertLines(new ParsedDiff(diff + "\n"), "@@ -1,1 +1,1 @@", "-a", "+b");
+        assertLines(new ParsedDiff(diff + "\n\n"), "@@ -1,1 +1,1 @@", "-a", "+b");
+        assertThat(new ParsedDiff(diff + "\n").getMaxLineLength(), is(15));
+    }
+
+    @Test
+    public void emptyLinesInBetween__areContextLines() {
+        ParsedDiff diff = new ParsedDiff("@@ -1,3 +1,3 @@\n a\n\n b");
+        assertLines(diff, "@@ -1,3 +1,3 @@", " a", "", " b");
+        assertThat(diff.getLineType(2), is(ParsedDiff.TYPE_CONTEXT));
+        assertThat(diff.getLeftLine(2), is(2));
+        assertThat(diff.getRightLine(3), is(3));
+    }
+
+    @Test
+    public void lineTypes__areDerivedFromFirstCharacter() {
+        ParsedDiff diff = new ParsedDiff(DIFF);
+        assertThat(diff.getLineType(0), is(ParsedDiff.TYPE_HUNK_HEADER));
+        assertThat(diff.getLineType(1), is(ParsedDiff.TYPE_CONTEXT));
+        assertThat(diff.getLineType(2), is(ParsedDiff.TYPE_REMOVED));
+        assertThat(diff.getLineType(3), is(ParsedDiff.TYPE_ADDED));
+    }
+
+    @Test
+    public void lineNumbers__followHunkHeaders() {
+        ParsedDiff diff = new ParsedDiff(DIFF);
+        int[][] expected = {
+            { 9, 19 }, { 10, 20 }, { 11, 20 }, { 11, 21 }, { 11, 22 }, { 12, 23 },
+            { 29, 39 }, { 30, 40 }
+        };
+        assertThat(diff.getLineCount(), is(expected.length));
+        for (int i = 0; i < expected.length; i++) {
+            assertThat("Left line of " + i, diff.getLeftLine(i), is(expected[i][0]));
+            assertThat("Right line of " + i, diff.getRightLine(i), is(expected[i][1]));
+        }
+    }
+
+    @Test
+    public void lineNumbers__doNotDependOnQueryOrder() {
+        ParsedDiff inOrder = new ParsedDiff(DIFF);
+        ParsedDiff reversed = new ParsedDiff(DIFF);
+        int count = reversed.getLineCount();
+        // Numbers the whole diff on the first call
+        reversed.getRightLine(count - 1);
+        for (int i = 0; i < count; i++) {
+            assertThat(reversed.getLeftLine(i), is(inOrder.getLeftLine(i)));
+            assertThat(reversed.getRightLine(i), is(inOrder.getRightLine(i)));
+        }
+    }
+
+    @Test
+    public void noNewlineMarker__doesNotAdvanceLineNumbers() {
+        ParsedDiff diff = new ParsedDiff("@@ -1,2 +1,2 @@\n"
+                + " a\n"
+                + "-b\n"
+                + "\\ No newline at end of file\n"
+                + "+c\n"
+                + "\\ No newline at end of file");
+        assertThat(diff.getLineCount(), is(6));
+        assertThat(diff.getLineType(3), is(ParsedDiff.TYPE_CONTEXT));
+        assertThat(diff.getLeftLine(3), is(2));
+        assertThat(diff.getRightLine(3), is(1));
+        assertThat(diff.getLeftLine(4), is(2));
+        assertThat(diff.getRightLine(4), is(2));
+        assertThat(diff.findLine(2, true), is(4));
+    }
+
+    @Test
+    public void linesBeforeFirstHunk__haveNoLineNumbers() {
+        ParsedDiff diff = new ParsedDiff("--- a/file\n+++ b/file\n@@ -0,0 +1,1 @@\n+a");
+        for (int i = 0; i < 2; i++) {
+            assertThat(diff.getLeftLine(i), is(-1));
+            assertThat(diff.getRightLine(i), is(-1));
+        }
+        assertThat(diff.getLeftLine(3), is(-1));
+        assertThat(diff.getRightLine(3), is(1));
+        assertThat(diff.findLine(1, true), is(3));
+    }
+
+    @Test
+    public void findLine__searchesRequestedSide() {
+        ParsedDiff diff = new ParsedDiff(DIFF);
+        assertThat(diff.findLine(11, false), is(2));
+        assertThat(diff.findLine(11, true), is(-1));
+        assertThat(diff.findLine(21, true), is(3));
+        assertThat(diff.findLine(12, false), is(5));
+        assertThat(diff.findLine(23, true), is(5));
+        assertThat(diff.findLine(40, true), is(7));
+    }
+
+    @Test
+    public void findLine__returnsFirstMatch() {
+        // Both the context line and the following removal have right line 20
+        assertThat(new ParsedDiff(DIFF).findLine(20, true), is(1));
+    }
+
+    @Test
+    public void findLine__returnsMinusOneForUnknownLines() {
+        ParsedDiff diff = new ParsedDiff(DIFF);
+        assertThat(diff.findLine(-1, true), is(-1));
+        assertThat(diff.findLine(-1, false), is(-1));
+        assertThat(diff.findLine(100, true), is(-1));
+    }
+
+    private static void assertLines(ParsedDiff diff, String... lines) {
+        assertThat(diff.getLineCount(), is(lines.length));
+        for (int i = 0; i < lines.length; i++) {
+            assertThat(diff.getLine(i), is(lines[i]));
+        }
+    }
+}
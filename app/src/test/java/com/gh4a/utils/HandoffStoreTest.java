@@ -0,0 +1,93 @@
+package com.gh4a.utils;
+
+import org.junit.After;
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class HandoffStoreTest {
+    // Must match HandoffStore.MAX_UNUSED_ENTRIES
+    private static final int MAX_UNUSED_ENTRIES = 8;
+
+    @After
+    public void clearStore() {
+        HandoffStore.clear();
+    }
+
+    @Test
+    public void acquire__returnsNullForUnknownKeys() {
+        assertThat(HandoffStore.acquire("unknown"), is(nullValue()));
+        assertThat(HandoffStore.acquire(null), is(nullValue()));
+    }
+
+    @Test
+    public void acquire__returnsStoredData() {
+        HandoffStore.put("key", "data");
+        assertThat(HandoffStore.acquire("key"), is("data"));
+        assertThat(HandoffStore.acquire("key"), is("data"));
+    }
+
+    @Test
+    public void heldEntries__areNotEvicted() {
+        HandoffStore.put("held", "data");
+        HandoffStore.acquire("held");
+        HandoffStore.acquire("held");
+        // Still held by the second reference
+        HandoffStore.release("held");
+        fillWithUnusedEntries(MAX_UNUSED_ENTRIES + 1);
+        assertThat(HandoffStore.acquire("held"), is("data"));
+    }
+
+    @Test
+    public void releasedEntries__areEvicted() {
+        HandoffStore.put("released", "data");
+        HandoffStore.acquire("released");
+        HandoffStore.release("released");
+        fillWithUnusedEntries(MAX_UNUSED_ENTRIES);
+        assertThat(HandoffStore.acquire("released"), is(nullValue()));
+    }
+
+    @Test
+    public void release__doesNotGoBelowZero() {
+        HandoffStore.put("key", "data");
+        HandoffStore.release("key");
+        HandoffStore.acquire("key");
+        fillWithUnusedEntries(MAX_UNUSED_ENTRIES + 1);
+        assertThat(HandoffStore.acquire("key"), is("data"));
+    }
+
+    @Test
+    public void put__replacesDataAndKeepsReferences() {
+        HandoffStore.put("key", "old");
+        HandoffStore.acquire("key");
+        HandoffStore.put("key", "new");
+        fillWithUnusedEntries(MAX_UNUSED_ENTRIES + 1);
+        assertThat(HandoffStore.acquire("key"), is("new"));
+    }
+
+    @Test
+    public void unusedEntries__areEvictedLeastRecentlyUsedFirst() {
+        for (int i = 0; i < MAX_UNUSED_ENTRIES; i++) {
+            HandoffStore.put("entry" + i, i);
+        }
+        // Use the oldest entry again, so the second oldest is evicted instead
+        HandoffStore.acquire("entry0");
+        HandoffStore.release("entry0");
+        HandoffStore.put("newest", -1);
+
+        assertThat(HandoffStore.acquire("entry1"), is(nullValue()));
+        assertThat(HandoffStore.acquire("entry0"), is(0));
+        for (int i = 2; i < MAX_UNUSED_ENTRIES; i++) {
+            assertThat(HandoffStore.acquire("entry" + i), is(i));
+        }
+        assertThat(HandoffStore.acquire("newest"), is(-1));
+    }
+
+    private static void fillWithUnusedEntries(int count) {
+        for (int i = 0; i < count; i++) {
+            HandoffStore.put("filler" + i, "filler");
+        }
+    }
+}
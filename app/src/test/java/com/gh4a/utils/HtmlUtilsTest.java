@@ -0,0 +1,268 @@
+package com.gh4a.utils;
+
+import android.graphics.Color;
+import android.graphics.Typeface;
+import android.graphics.drawable.ColorDrawable;
+import android.graphics.drawable.Drawable;
+import android.text.Html.ImageGetter;
+import android.text.Spanned;
+import android.text.style.BulletSpan;
+import android.text.style.StyleSpan;
+import android.text.style.TypefaceSpan;
+import android.view.ContextThemeWrapper;
+
+import com.gh4a.R;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertArrayEquals;
+
+@RunWith(RobolectricTestRunner.class)
+public class HtmlUtilsTest {
+    private static final ImageGetter IMAGE_GETTER = source -> {
+        Drawable d = new ColorDrawable(Color.RED);
+        d.setBounds(0, 0, 10, 10);
+        return d;
+    };
+
+    private ContextThemeWrapper mContext;
+
+    @Before
+    public void createContext() {
+        mContext = new ContextThemeWrapper(RuntimeEnvironment.application, R.style.AppTheme);
+    }
+
+    @Test
+    public void nestedSameTags__produceOneSpanPerTag() {
+        Spanned spanned = encode("<b>a<b>b</b>c</b>");
+        assertThat(spanned.toString(), is("abc"));
+        assertThat(countStyleSpans(spanned, Typeface.BOLD), is(2));
+        assertThat("Outer bold doesn't cover the whole text",
+                isStyled(spanned, 0, Typeface.BOLD) && isStyled(spanned, 2, Typeface.BOLD),
+                is(true));
+    }
+
+    @Test
+    public void nestedDifferentTags__coverTheirOwnContent() {
+        Spanned spanned = encode("<b>a<i>b</i>c</b>");
+        assertThat(spanned.toString(), is("abc"));
+        assertThat(isStyled(spanned, 0, Typeface.BOLD), is(true));
+        assertThat(isStyled(spanned, 2, Typeface.BOLD), is(true));
+        assertThat(isStyled(spanned, 0, Typeface.ITALIC), is(false));
+        assertThat(isStyled(spanned, 1, Typeface.ITALIC), is(true));
+        assertThat(isStyled(spanned, 2, Typeface.ITALIC), is(false));
+    }
+
+    @Test
+    public void unclosedTags__extendToEndOfDocument() {
+        Spanned spanned = encode("<p><b>bold <i>both");
+        assertThat(spanned.toString(), is("bold both"));
+        assertThat(isStyled(spanned, 0, Typeface.BOLD), is(true));
+        assertThat(isStyled(spanned, 8, Typeface.BOLD), is(true));
+        assertThat(isStyled(spanned, 0, Typeface.ITALIC), is(false));
+        assertThat(isStyled(spanned, 5, Typeface.ITALIC), is(true));
+        assertThat(isStyled(spanned, 8, Typeface.ITALIC), is(true));
+    }
+
+    @Test
+    public void misnestedTags__keepStylesOfBothTags() {
+        Spanned spanned = encode("<b>a<i>b</b>c</i>");
+        assertThat(spanned.toString(), is("abc"));
+        assertThat(isStyled(spanned, 1, Typeface.BOLD), is(true));
+        assertThat(isStyled(spanned, 2, Typeface.BOLD), is(false));
+        assertThat(isStyled(spanned, 0, Typeface.ITALIC), is(false));
+        assertThat(isStyled(spanned, 1, Typeface.ITALIC), is(true));
+    }
+
+    @Test
+    public void unclosedListItems__produceOneBulletEach() {
+        Spanned spanned = encode("<ul><li>one<li>two</ul>");
+        assertThat(spanned.getSpans(0, spanned.length(), BulletSpan.class).length, is(2));
+    }
+
+    @Test
+    public void nestedLists__produceOneBulletPerItem() {
+        Spanned spanned = encode("<ul><li>a<ul><li>b<li>c</ul></li><li>d</ul>");
+        assertThat(spanned.getSpans(0, spanned.length(), BulletSpan.class).length, is(4));
+    }
+
+    @Test
+    public void codeInsidePre__isMonospace() {
+        Spanned spanned = encode("<p>before<pre><code>x = 1</code></pre>");
+        int codeStart = spanned.toString().indexOf("x = 1");
+        TypefaceSpan[] spans = spanned.getSpans(codeStart, codeStart + 1, TypefaceSpan.class);
+        assertThat(spans.length > 0, is(true));
+        assertThat(spans[0].getFamily(), is("monospace"));
+        assertThat(spanned.getSpans(0, 1, TypefaceSpan.class).length, is(0));
+    }
+
+    @Test
+    public void rewriteRelativeUrls__matchesPreviousOutput() {
+        // Expected values are the output of the former two-pass href/src rewrite
+        assertRewritten("<a href=\"guide.md\">guide</a>",
+                "<a href=\"https://github.com/owner/repo/blob/master/docs/guide.md\">guide</a>");
+        assertRewritten("<a href=\"/guide.md\">guide</a>",
+                "<a href=\"https://github.com/owner/repo/blob/master/docs/guide.md\">guide</a>");
+        assertRewritten("<img src=\"images/logo.png\">",
+                "<img src=\"https://raw.github.com/owner/repo/master/docs/images/logo.png\">");
+        assertRewritten("<img src=\"/images/logo.png\">",
+                "<img src=\"https://raw.github.com/owner/repo/master/docs/images/logo.png\">");
+        assertRewritten("<a href=\"a.md\"><img src=\"b.png\"></a>",
+                "<a href=\"https://github.com/owner/repo/blob/master/docs/a.md\">"
+                + "<img src=\"https://raw.github.com/owner/repo/master/docs/b.png\"></a>");
+        assertRewritten("<a href=\"a.md\"src=\"b.png\">x</a>",
+                "<a href=\"https://github.com/owner/repo/blob/master/docs/a.md\""
+                + "src=\"https://raw.github.com/owner/repo/master/docs/b.png\">x</a>");
+        assertRewritten("<a data-href=\"x.md\">x</a>",
+                "<a data-href=\"https://github.com/owner/repo/blob/master/docs/x.md\">x</a>");
+    }
+
+    @Test
+    public void rewriteRelativeUrls__leavesAbsoluteAndAnchorUrls() {
+        assertUnchanged("<a href=\"https://example.com/x\">x</a>"
+                + "<img src=\"http://example.com/y.png\">");
+        assertUnchanged("<a href=\"mailto:someone@example.com\">mail</a>");
+        assertUnchanged("<a href=\"#section\">section</a>");
+        assertUnchanged("<p>no links</p>");
+    }
+
+    @Test
+    public void rewriteRelativeUrls__treatsProtocolRelativeUrlsAsRelative() {
+        // Like before, '//' URLs have no scheme and are thus prefixed
+        assertRewritten("<a href=\"//cdn.example.com/x\">x</a>",
+                "<a href=\"https://github.com/owner/repo/blob/master/docs//cdn.example.com/x\">x</a>");
+        assertRewritten("<img src=\"//cdn.example.com/y.png\">",
+                "<img src=\"https://raw.github.com/owner/repo/master/docs//cdn.example.com/y.png\">");
+    }
+
+    @Test
+    public void rewriteRelativeUrls__onlyRewritesDoubleQuotedAttributes() {
+        assertUnchanged("<a href='single.md'>s</a><img src='single.png'>");
+        assertRewritten("<a href='single.md'><img src=\"double.png\"></a>",
+                "<a href='single.md'>"
+                + "<img src=\"https://raw.github.com/owner/repo/master/docs/double.png\"></a>");
+    }
+
+    @Test
+    public void rewriteRelativeUrls__rewritesAdjacentAttributesSeparately() {
+        // The two-pass rewrite left the src here alone, as its pattern matched across
+        // both attributes and the combined value contained a colon
+        assertRewritten("<a src=\"a.png\"href=\"b.md\">x</a>",
+                "<a src=\"https://raw.github.com/owner/repo/master/docs/a.png\""
+                + "href=\"https://github.com/owner/repo/blob/master/docs/b.md\">x</a>");
+    }
+
+    @Test
+    public void encodedText__survivesRoundTripForEachSpanType() throws IOException {
+        assertRoundTrip("<b>bold</b> and <i>italic</i>", "StyleSpan");
+        assertRoundTrip("<big>big</big>", "RelativeSizeSpan");
+        assertRoundTrip("<tt>mono</tt>", "TypefaceSpan");
+        assertRoundTrip("<u>underline</u>", "UnderlineSpan");
+        assertRoundTrip("<s>strike</s>", "StrikethroughSpan");
+        assertRoundTrip("x<sup>2</sup>", "SuperscriptSpan");
+        assertRoundTrip("x<sub>2</sub>", "SubscriptSpan");
+        assertRoundTrip("<font color=\"#ff0000\">red</font>", "ForegroundColorSpan");
+        assertRoundTrip("inline <code>code</code>", "BackgroundColorSpan");
+        assertRoundTrip("<p style=\"text-align: center\">centered</p>", "Standard");
+        assertRoundTrip("<ul><li>item</li></ul>", "BulletSpan");
+        assertRoundTrip("<a href=\"https://example.com\">link</a>", "LinkSpan");
+        assertRoundTrip("<blockquote>quote</blockquote>", "ReplySpan");
+        assertRoundTrip("<pre><code>block</code></pre>", "CodeBlockSpan");
+        assertRoundTrip("above<hr>below", "HorizontalLineSpan");
+        assertRoundTrip("<img src=\"https://example.com/a.png\">", "ImageSpan");
+        assertRoundTrip("<input type=\"checkbox\" checked> done", "CheckboxSpan");
+        assertRoundTrip("<input type=\"checkbox\"> todo", "CheckboxSpan");
+    }
+
+    @Test
+    public void readEncoded__rejectsOtherFormatVersions() throws IOException {
+        byte[] data = writeEncoded(HtmlUtils.encode(mContext, "<b>bold</b>", IMAGE_GETTER));
+        data[3]++;
+        assertThat(readEncoded(data), is((CharSequence) null));
+    }
+
+    private void assertRoundTrip(String html, String spanClassName) throws IOException {
+        CharSequence original = HtmlUtils.encode(mContext, html, IMAGE_GETTER);
+        byte[] written = writeEncoded(original);
+
+        CharSequence read = readEncoded(written);
+        assertThat(html, read, notNullValue());
+        assertThat(html, read.toString(), is(original.toString()));
+        assertThat(spanClassName + " missing in " + html,
+                hasSpan((Spanned) read, spanClassName), is(true));
+        // The written data covers positions, flags and attributes of all spans
+        assertArrayEquals(html, written, writeEncoded(read));
+    }
+
+    private static byte[] writeEncoded(CharSequence text) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(buffer)) {
+            assertThat("Could not write " + text, HtmlUtils.writeEncoded(text, out), is(true));
+        }
+        return buffer.toByteArray();
+    }
+
+    private CharSequence readEncoded(byte[] data) throws IOException {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(data))) {
+            return HtmlUtils.readEncoded(mContext, in, IMAGE_GETTER);
+        }
+    }
+
+    private static boolean hasSpan(Spanned spanned, String spanClassName) {
+        for (Object span : spanned.getSpans(0, spanned.length(), Object.class)) {
+            if (span.getClass().getSimpleName().equals(spanClassName)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void assertRewritten(String html, String expected) {
+        assertThat(HtmlUtils.rewriteRelativeUrls(html, "owner", "repo", "master", "docs"),
+                is(expected));
+    }
+
+    private static void assertUnchanged(String html) {
+        assertRewritten(html, html);
+    }
+
+    private Spanned encode(String html) {
+        CharSequence encoded = HtmlUtils.encode(mContext, html, null);
+        assertThat(encoded, instanceOf(Spanned.class));
+        return (Spanned) encoded;
+    }
+
+    private static int countStyleSpans(Spanned spanned, int style) {
+        int count = 0;
+        for (StyleSpan span : spanned.getSpans(0, spanned.length(), StyleSpan.class)) {
+            if (span.getStyle() == style) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static boolean isStyled(Spanned spanned, int position, int style) {
+        for (StyleSpan span : spanned.getSpans(position, position + 1, StyleSpan.class)) {
+            if (span.getStyle() == style && spanned.getSpanStart(span) <= position
+                    && spanned.getSpanEnd(span) > position) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,88 @@
+package com.gh4a.utils;
+
+import android.graphics.BitmapFactory;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.awt.image.BufferedImage;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import javax.imageio.ImageIO;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+@RunWith(RobolectricTestRunner.class)
+public class HttpImageGetterTest {
+    private static final int METADATA_SEGMENT_SIZE = 65000;
+
+    @Test
+    public void jpegWithLargeMetadata__isSampled() throws IOException {
+        // Puts the frame header about 128 KB into the file
+        byte[] jpeg = makeJpegWithLargeMetadata(4000, 3000, 2);
+
+        BufferedInputStream is = new BufferedInputStream(new ByteArrayInputStream(jpeg));
+        BitmapFactory.Options options = HttpImageGetter.decodeBounds(is, 1000, 1000);
+
+        assertThat("Bounds were not found", options, is(notNullValue()));
+        assertThat(options.outWidth, is(4000));
+        assertThat(options.outHeight, is(3000));
+        assertThat(options.inSampleSize, is(8));
+    }
+
+    @Test
+    public void decodeBounds__rewindsStream() throws IOException {
+        byte[] jpeg = makeJpegWithLargeMetadata(400, 300, 2);
+        BufferedInputStream is = new BufferedInputStream(new ByteArrayInputStream(jpeg));
+
+        HttpImageGetter.decodeBounds(is, 1000, 1000);
+
+        ByteArrayOutputStream rest = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = is.read(buffer)) > 0) {
+            rest.write(buffer, 0, read);
+        }
+        assertThat("Stream was not rewound to the start", rest.toByteArray(), is(jpeg));
+    }
+
+    @Test
+    public void smallImage__isNotSampled() throws IOException {
+        byte[] jpeg = makeJpegWithLargeMetadata(400, 300, 0);
+        BufferedInputStream is = new BufferedInputStream(new ByteArrayInputStream(jpeg));
+        BitmapFactory.Options options = HttpImageGetter.decodeBounds(is, 1000, 1000);
+
+        assertThat("Bounds were not found", options, is(notNullValue()));
+        assertThat(options.inSampleSize, is(1));
+    }
+
+    // Creates a JPEG with the given number of (maximum sized) APP2 segments before the
+    // frame header, like images with embedded ICC profiles have
+    private static byte[] makeJpegWithLargeMetadata(int width, int height, int segmentCount)
+            throws IOException {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_BYTE_GRAY);
+        ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+        ImageIO.write(image, "jpg", encoded);
+        byte[] plain = encoded.toByteArray();
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        // SOI marker
+        out.write(plain, 0, 2);
+        for (int i = 0; i < segmentCount; i++) {
+            int length = METADATA_SEGMENT_SIZE + 2;
+            out.write(0xff);
+            out.write(0xe2);
+            out.write(length >> 8);
+            out.write(length & 0xff);
+            out.write(new byte[METADATA_SEGMENT_SIZE]);
+        }
+        out.write(plain, 2, plain.length - 2);
+        return out.toByteArray();
+    }
+}